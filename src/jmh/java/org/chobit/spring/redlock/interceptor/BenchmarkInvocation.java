@@ -0,0 +1,59 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Reusable {@link MethodInvocation} that proceeds with a plain call instead of reflection,
+ * so that the benchmarks only measure the overhead of the interceptor.
+ *
+ * @author rui.zhang
+ */
+final class BenchmarkInvocation implements MethodInvocation {
+
+
+    private final Object target;
+
+    private final Method method;
+
+    private final Object[] arguments;
+
+    private final Supplier<Object> proceed;
+
+
+    BenchmarkInvocation(Object target, Method method, Object[] arguments, Supplier<Object> proceed) {
+        this.target = target;
+        this.method = method;
+        this.arguments = arguments;
+        this.proceed = proceed;
+    }
+
+
+    @Override
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public Object[] getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public Object proceed() {
+        return proceed.get();
+    }
+
+    @Override
+    public Object getThis() {
+        return target;
+    }
+
+    @Override
+    public AccessibleObject getStaticPart() {
+        return method;
+    }
+}
@@ -0,0 +1,73 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.RedLock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Target of the benchmarks, carrying the typical {@link RedLock} usages.
+ *
+ * @author rui.zhang
+ */
+public class BenchmarkService {
+
+
+    private long stock;
+
+
+    @RedLock(key = "'order:' + #orderId", leaseTime = 10)
+    public long placeOrder(Long orderId) {
+        return orderId;
+    }
+
+
+    @RedLock(key = "'stock:' + #sku", waitTime = 60, leaseTime = 60)
+    public long deductStock(Long sku) {
+        return ++stock;
+    }
+
+
+    @RedLock(key = "#skus.!['stock:' + #this]", waitTime = 60, leaseTime = 60)
+    public long deductStocks(List<Long> skus) {
+        stock += skus.size();
+        return stock;
+    }
+
+
+    @RedLock(key = "'stock:' + #sku", waitTime = 60, leaseTime = 60, hashtag = true)
+    public long deductStockTagged(Long sku) {
+        return ++stock;
+    }
+
+
+    @RedLock(key = "#skus.!['stock:' + #this]", waitTime = 60, leaseTime = 60, hashtag = true)
+    public long deductStocksTagged(List<Long> skus) {
+        stock += skus.size();
+        return stock;
+    }
+
+
+    @RedLock(key = "'stock:' + #sku", waitTime = 60, leaseTime = 60, striped = true)
+    public long deductStockStriped(Long sku) {
+        return ++stock;
+    }
+
+
+    @RedLock(key = "'seat:' + #seat", waitTime = 5, leaseTime = 100, timeUnit = TimeUnit.MILLISECONDS)
+    public long reserveSeat(Long seat) {
+        return seat;
+    }
+
+
+    @RedLock(key = "'seat:' + #seat", waitTime = 5, leaseTime = 100, timeUnit = TimeUnit.MILLISECONDS, spin = true)
+    public long reserveSeatSpinning(Long seat) {
+        return seat;
+    }
+
+
+    public long getStock() {
+        return stock;
+    }
+
+}
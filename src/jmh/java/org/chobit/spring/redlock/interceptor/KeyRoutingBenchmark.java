@@ -0,0 +1,263 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockLease;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.chobit.spring.redlock.routing.DefaultRedLockKeyRouter;
+import org.chobit.spring.redlock.routing.RedLockKeyRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.connection.CRC16;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of the locks over the shards of a Redis Cluster, by key routing strategy.
+ *
+ * <p>The stand-in cluster hashes each key to one of the 16384 slots as Redis Cluster does, hashtags
+ * included, and locks it on the in-memory shard owning the slot. Half of the invocations lock a hot
+ * key, {@code stock:0}, the others a random key or a batch of four. After each iteration the share of
+ * the locks taken on each shard is printed, together with the share of the batches spanning several
+ * slots, which a Redis Cluster rejects with {@code CROSSSLOT} in a multi-key command. The hashtag and the
+ * stripes are opted in by the operations, as the annotations of the service do. The throughput shows what
+ * striping the hot key gains, at the price of running up to 8 of its holders at once.
+ *
+ * @author rui.zhang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(16)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyRoutingBenchmark {
+
+
+    private static final int SLOTS = 16384;
+
+    private static final int BATCH_SIZE = 4;
+
+
+    @Param({"none", "prefix", "hashtag", "striped"})
+    public String routing;
+
+    @Param({"6"})
+    public int shards;
+
+    @Param({"10000"})
+    public int keys;
+
+    private ClusterStandIn cluster;
+
+    private RedLockKeyRouter keyRouter;
+
+    private RedLockInterceptor interceptor;
+
+    private BenchmarkService target;
+
+    private Method single;
+
+    private Method batch;
+
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        this.cluster = new ClusterStandIn(shards);
+        this.keyRouter = createKeyRouter(routing);
+
+        this.interceptor = new RedLockInterceptor();
+        this.interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        this.interceptor.setLockProvider(cluster);
+        this.interceptor.setKeyRouter(keyRouter);
+        this.interceptor.setBeanFactory(new DefaultListableBeanFactory());
+        this.interceptor.afterPropertiesSet();
+
+        this.target = new BenchmarkService();
+        this.single = BenchmarkService.class.getMethod(
+                "hashtag".equals(routing) ? "deductStockTagged" : "striped".equals(routing) ? "deductStockStriped" : "deductStock", Long.class);
+        this.batch = BenchmarkService.class.getMethod(
+                "hashtag".equals(routing) ? "deductStocksTagged" : "deductStocks", List.class);
+    }
+
+
+    private static RedLockKeyRouter createKeyRouter(String routing) {
+        switch (routing) {
+            case "prefix":
+            case "hashtag":
+                return new DefaultRedLockKeyRouter("app:", Collections.emptyMap());
+            case "striped":
+                return new DefaultRedLockKeyRouter("app:", Collections.singletonMap("stock:0", 8));
+            default:
+                return null;
+        }
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long total = 0;
+        for (int i = 0; i < shards; i++) {
+            total += cluster.locks.get(i);
+        }
+        StringBuilder shares = new StringBuilder();
+        for (int i = 0; i < shards; i++) {
+            shares.append(String.format("%.1f%% ", 100.0 * cluster.locks.getAndSet(i, 0) / Math.max(1, total)));
+        }
+        System.out.printf("%n[%s] locks per shard: %s, cross-slot batches: %.1f%%%n",
+                routing, shares.toString().trim(), 100.0 * crossSlotBatches() / 1000);
+    }
+
+
+    /**
+     * The number of sample batches out of 1000 whose routed keys span several slots.
+     */
+    private int crossSlotBatches() {
+        int crossSlot = 0;
+        for (int i = 0; i < 1000; i++) {
+            String[] routed = route(randomBatch());
+            for (String key : routed) {
+                if (slot(key) != slot(routed[0])) {
+                    crossSlot++;
+                    break;
+                }
+            }
+        }
+        return crossSlot;
+    }
+
+
+    private String[] route(List<Long> skus) {
+        String[] logical = new String[skus.size()];
+        for (int i = 0; i < logical.length; i++) {
+            logical[i] = "stock:" + skus.get(i);
+        }
+        return (null != keyRouter ? keyRouter.route(logical, "hashtag".equals(routing)) : logical);
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        interceptor.destroy();
+        cluster.shutdown();
+    }
+
+
+    @Benchmark
+    public Object lock() throws Throwable {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int dice = random.nextInt(10);
+        if (dice < 5) {
+            return interceptor.invoke(new BenchmarkInvocation(target, single, new Object[]{0L}, () -> target.deductStock(0L)));
+        }
+        if (dice < 9) {
+            Long sku = 1L + random.nextInt(keys);
+            return interceptor.invoke(new BenchmarkInvocation(target, single, new Object[]{sku}, () -> target.deductStock(sku)));
+        }
+        List<Long> skus = randomBatch();
+        return interceptor.invoke(new BenchmarkInvocation(target, batch, new Object[]{skus}, () -> target.deductStocks(skus)));
+    }
+
+
+    private List<Long> randomBatch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> skus = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            skus.add(1L + random.nextInt(keys));
+        }
+        return skus;
+    }
+
+
+    /**
+     * The slot of a key in a Redis Cluster, of its hashtag if any.
+     */
+    private static int slot(String key) {
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                key = key.substring(start + 1, end);
+            }
+        }
+        return CRC16.crc16(key.getBytes(StandardCharsets.UTF_8)) % SLOTS;
+    }
+
+
+    /**
+     * Stand-in of a Redis Cluster, the slots split evenly over in-memory shards.
+     */
+    static final class ClusterStandIn implements LockProvider {
+
+        private final InMemoryLockProvider[] shards;
+
+        private final AtomicLongArray locks;
+
+        ClusterStandIn(int shards) {
+            this.shards = new InMemoryLockProvider[shards];
+            for (int i = 0; i < shards; i++) {
+                this.shards[i] = new InMemoryLockProvider();
+            }
+            this.locks = new AtomicLongArray(shards);
+        }
+
+        @Override
+        public LockHandle getLock(String key, LockMode mode) {
+            return shard(key).getLock(key, mode);
+        }
+
+        @Override
+        public LockHandle getSemaphore(String key, int permits) {
+            return shard(key).getSemaphore(key, permits);
+        }
+
+        @Override
+        public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+            boolean[] renewed = new boolean[leases.size()];
+            for (int i = 0; i < renewed.length; i++) {
+                renewed[i] = shard(leases.get(i).getKey()).renewAsync(leases.subList(i, i + 1), leaseMillis)
+                        .toCompletableFuture().join()[0];
+            }
+            return CompletableFuture.completedFuture(renewed);
+        }
+
+        private InMemoryLockProvider shard(String key) {
+            int shard = slot(key) * shards.length / SLOTS;
+            locks.incrementAndGet(shard);
+            return shards[shard];
+        }
+
+        void shutdown() {
+            for (InMemoryLockProvider shard : shards) {
+                shard.shutdown();
+            }
+        }
+    }
+
+}
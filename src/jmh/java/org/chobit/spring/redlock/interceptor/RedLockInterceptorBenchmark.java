@@ -0,0 +1,184 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.interceptor.spel.RedLockKeyGenerator;
+import org.chobit.spring.redlock.interceptor.spel.RedLockOperationExpressionEvaluator;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.chobit.spring.redlock.provider.MultiMasterLockProvider;
+import org.chobit.spring.redlock.provider.RedissonLockProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.expression.EvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks of the {@code @RedLock} interception hot path, end to end and phase by phase.
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ *
+ * @author rui.zhang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedLockInterceptorBenchmark {
+
+
+    @Param({"false", "true"})
+    public boolean localCoalescing;
+
+    /**
+     * The Redisson providers run on in-memory Redisson clients, so all measure the lock path without network.
+     * The multi-master one locks on three independent stand-ins.
+     */
+    @Param({"redisson", "in-memory", "multi-master"})
+    public String provider;
+
+    private RedLockInterceptor interceptor;
+
+    private RedLockOperationSource operationSource;
+
+    private RedLockOperationExpressionEvaluator evaluator;
+
+    private LockProvider lockProvider;
+
+    private DefaultListableBeanFactory beanFactory;
+
+    private BenchmarkService target;
+
+    private Method method;
+
+    private Class<?> targetClass;
+
+    private Object[] args;
+
+    private RedLockOperation operation;
+
+    private AnnotatedElementKey methodKey;
+
+    private RedLockKeyGenerator keyGenerator;
+
+    private BenchmarkInvocation invocation;
+
+    private RedLockTemplate template;
+
+    private RedLockOptions options;
+
+    private Supplier<Long> action;
+
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        this.lockProvider = createLockProvider(provider);
+        this.operationSource = new AnnotationRedLockOperationSource();
+        this.evaluator = new RedLockOperationExpressionEvaluator();
+        this.beanFactory = new DefaultListableBeanFactory();
+
+        this.interceptor = new RedLockInterceptor();
+        this.interceptor.setRedLockOperationSource(operationSource);
+        this.interceptor.setLockProvider(lockProvider);
+        this.interceptor.setLocalCoalescing(localCoalescing);
+        this.interceptor.setBeanFactory(beanFactory);
+        this.interceptor.afterPropertiesSet();
+
+        this.target = new BenchmarkService();
+        this.method = BenchmarkService.class.getMethod("placeOrder", Long.class);
+        this.targetClass = BenchmarkService.class;
+        this.args = new Object[]{42L};
+        this.operation = operationSource.getRedLockOperation(method, targetClass);
+        this.methodKey = new AnnotatedElementKey(method, targetClass);
+        this.keyGenerator = evaluator.compileKey(operation.getKey(), method, targetClass, method, beanFactory);
+        this.invocation = new BenchmarkInvocation(target, method, args, () -> target.placeOrder(42L));
+        this.template = new RedLockTemplate(interceptor);
+        this.options = RedLockOptions.builder("'order:' + #orderId").leaseTime(10).build();
+        this.action = () -> target.placeOrder(42L);
+    }
+
+
+    private static LockProvider createLockProvider(String provider) {
+        switch (provider) {
+            case "in-memory":
+                return new InMemoryLockProvider();
+            case "multi-master":
+                return new MultiMasterLockProvider(Arrays.asList(InMemoryRedissonClient.create(),
+                        InMemoryRedissonClient.create(), InMemoryRedissonClient.create()), 50, 0.01);
+            default:
+                return new RedissonLockProvider(InMemoryRedissonClient.create());
+        }
+    }
+
+
+    @Benchmark
+    public Object invoke() throws Throwable {
+        return interceptor.invoke(invocation);
+    }
+
+
+    /**
+     * The same operation as {@link #invoke()} without the interception, the reflection nor the key expression.
+     */
+    @Benchmark
+    public Object template() {
+        return template.execute("order:42", options, action);
+    }
+
+
+    @Benchmark
+    public Object operationLookup() {
+        return operationSource.getRedLockOperation(method, targetClass);
+    }
+
+
+    /**
+     * Expected to allocate nothing, i.e. {@code gc.alloc.rate.norm} of 0 B/op with {@code -prof gc}.
+     */
+    @Benchmark
+    public Object metadataLookup() {
+        return interceptor.getRedLockOperationMetadata(method, targetClass);
+    }
+
+
+    @Benchmark
+    public Object keyEvaluation() {
+        EvaluationContext context = evaluator.createEvaluationContext(method, args, target, targetClass, method, beanFactory);
+        return evaluator.key(operation.getKey(), methodKey, context);
+    }
+
+
+    @Benchmark
+    public Object compiledKeyGeneration() {
+        return keyGenerator.generate(target, args);
+    }
+
+
+    @Benchmark
+    public boolean lockAcquireRelease() throws InterruptedException {
+        LockHandle lock = lockProvider.getLock("order:42", LockMode.REENTRANT);
+        boolean locked = lock.tryLock(0, 10, TimeUnit.SECONDS);
+        if (locked) {
+            lock.unlock();
+        }
+        return locked;
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.exception.RedLockException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Short waits on many distinct keys, waiting by the pub/sub notifications of Redisson versus by spinning.
+ *
+ * <p>Each invocation locks a random key out of {@code keys} with a wait time of 5ms and holds it for
+ * {@code holdMicros}. The in-memory stand-in has no subscription cost, so for meaningful numbers run
+ * against a real server, e.g. {@code -Djmh.args="SpinWaitBenchmark -p redisAddress=redis://127.0.0.1:6379"},
+ * and watch the subscription connections with {@code CLIENT LIST}.
+ *
+ * @author rui.zhang
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpinWaitBenchmark {
+
+
+    @Param({"subscribe", "spin"})
+    public String strategy;
+
+    @Param({"10000"})
+    public int keys;
+
+    @Param({"1000"})
+    public long holdMicros;
+
+    /**
+     * Address of a real Redis server, the in-memory stand-in is used if empty.
+     */
+    @Param({""})
+    public String redisAddress;
+
+    private RedissonClient redissonClient;
+
+    private RedLockInterceptor interceptor;
+
+    private BenchmarkService target;
+
+    private Method method;
+
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        if (redisAddress.isEmpty()) {
+            this.redissonClient = InMemoryRedissonClient.create();
+        } else {
+            Config cfg = new Config();
+            cfg.useSingleServer().setAddress(redisAddress);
+            this.redissonClient = Redisson.create(cfg);
+        }
+
+        this.interceptor = new RedLockInterceptor();
+        this.interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        this.interceptor.setRedissonClient(redissonClient);
+        this.interceptor.setBeanFactory(new DefaultListableBeanFactory());
+        this.interceptor.afterPropertiesSet();
+
+        this.target = new BenchmarkService();
+        this.method = BenchmarkService.class.getMethod(
+                "spin".equals(strategy) ? "reserveSeatSpinning" : "reserveSeat", Long.class);
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        interceptor.destroy();
+        if (!redisAddress.isEmpty()) {
+            redissonClient.shutdown();
+        }
+    }
+
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+
+        public long acquired;
+
+        public long timedOut;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.acquired = 0;
+            this.timedOut = 0;
+        }
+    }
+
+
+    @Benchmark
+    public Object reserve(Outcomes outcomes) throws Throwable {
+        Long seat = (long) ThreadLocalRandom.current().nextInt(keys);
+        BenchmarkInvocation invocation = new BenchmarkInvocation(target, method, new Object[]{seat}, () -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(holdMicros));
+            return target.reserveSeat(seat);
+        });
+        try {
+            Object result = interceptor.invoke(invocation);
+            outcomes.acquired++;
+            return result;
+        } catch (RedLockException e) {
+            outcomes.timedOut++;
+            return e;
+        }
+    }
+
+}
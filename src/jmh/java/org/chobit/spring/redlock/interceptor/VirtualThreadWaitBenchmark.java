@@ -0,0 +1,111 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.WaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress of thousands of virtual threads waiting for the same key on a carrier pool of two threads.
+ *
+ * <p>Requires JDK 21 or later. With {@link WaitStrategy#ASYNC} the waiting virtual threads are
+ * unmounted and the holder keeps a carrier; pinned waits are reported by {@code jdk.tracePinnedThreads}.
+ *
+ * @author rui.zhang
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djdk.virtualThreadScheduler.parallelism=2",
+        "-Djdk.virtualThreadScheduler.maxPoolSize=2",
+        "-Djdk.tracePinnedThreads=short"})
+@State(Scope.Benchmark)
+public class VirtualThreadWaitBenchmark {
+
+
+    @Param({"BLOCKING", "ASYNC"})
+    public WaitStrategy waitStrategy;
+
+    @Param({"5000"})
+    public int threads;
+
+    private Method newVirtualThreadPerTaskExecutor;
+
+    private RedLockInterceptor interceptor;
+
+    private Method method;
+
+    private BenchmarkService target;
+
+    private BenchmarkInvocation invocation;
+
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        try {
+            this.newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("virtual threads require JDK 21 or later", e);
+        }
+
+        this.interceptor = new RedLockInterceptor();
+        this.interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        this.interceptor.setRedissonClient(InMemoryRedissonClient.create());
+        this.interceptor.setWaitStrategy(waitStrategy);
+        this.interceptor.setBeanFactory(new DefaultListableBeanFactory());
+        this.interceptor.afterPropertiesSet();
+
+        this.method = BenchmarkService.class.getMethod("deductStock", Long.class);
+    }
+
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        BenchmarkService target = new BenchmarkService();
+        this.target = target;
+        this.invocation = new BenchmarkInvocation(target, method, new Object[]{7L}, () -> target.deductStock(7L));
+    }
+
+
+    @Benchmark
+    public long contend() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    interceptor.invoke(invocation);
+                } catch (Throwable t) {
+                    failures.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("virtual threads are still waiting for the lock");
+        }
+        if (failures.get() > 0 || target.getStock() != threads) {
+            throw new IllegalStateException("failures: " + failures.get() + ", locked invocations: " + target.getStock());
+        }
+        return target.getStock();
+    }
+
+}
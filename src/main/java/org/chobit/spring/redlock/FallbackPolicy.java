@@ -0,0 +1,28 @@
+package org.chobit.spring.redlock;
+
+/**
+ * 熔断器打开期间，即Redis异常或过慢时，获取锁的降级方式
+ *
+ * @author rui.zhang
+ */
+public enum FallbackPolicy {
+
+
+    /**
+     * 不访问Redis，直接抛出RedLockException
+     */
+    FAIL_FAST,
+
+
+    /**
+     * 不加锁，直接执行方法，适合锁仅用于减少重复执行的场景
+     */
+    PROCEED_UNLOCKED,
+
+
+    /**
+     * 以JVM内的本地锁代替分布式锁，仅与本实例的调用互斥
+     */
+    LOCAL_LOCK,
+
+}
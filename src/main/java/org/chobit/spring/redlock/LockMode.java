@@ -0,0 +1,40 @@
+package org.chobit.spring.redlock;
+
+/**
+ * 锁的类型
+ *
+ * @author rui.zhang
+ */
+public enum LockMode {
+
+
+    /**
+     * 可重入锁，对应Redisson的RLock
+     */
+    REENTRANT,
+
+
+    /**
+     * 公平锁，按请求顺序获取锁
+     */
+    FAIR,
+
+
+    /**
+     * 读锁，与同一Key的其他读锁共享，与写锁互斥
+     */
+    READ,
+
+
+    /**
+     * 写锁，与同一Key的读锁和写锁均互斥
+     */
+    WRITE,
+
+
+    /**
+     * 自旋锁，以退避重试代替pub/sub等待锁
+     */
+    SPIN,
+
+}
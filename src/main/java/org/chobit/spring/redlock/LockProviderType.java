@@ -0,0 +1,28 @@
+package org.chobit.spring.redlock;
+
+/**
+ * 锁的实现方式
+ *
+ * @author rui.zhang
+ */
+public enum LockProviderType {
+
+
+    /**
+     * 基于Redisson的分布式锁
+     */
+    REDISSON,
+
+
+    /**
+     * 在多个独立的Redis主节点上执行Redlock算法，多数节点获取成功即持有锁
+     */
+    MULTI_MASTER,
+
+
+    /**
+     * JVM内的本地锁，仅适用于单节点部署或测试
+     */
+    IN_MEMORY,
+
+}
@@ -16,7 +16,7 @@ public @interface RedLock {
 
 
     /**
-     * RedLock Key
+     * RedLock Key，结果为集合或数组时同时锁定其中全部Key
      *
      * @return RedLock key
      */
@@ -32,7 +32,7 @@ public @interface RedLock {
 
 
     /**
-     * 持有锁的时长
+     * 持有锁的时长，为负数时自动续期直至释放锁
      *
      * @return 持有锁的时长
      */
@@ -55,4 +55,66 @@ public @interface RedLock {
     boolean finallyRelease() default true;
 
 
+    /**
+     * 锁的类型
+     *
+     * @return 锁的类型
+     */
+    LockMode mode() default LockMode.REENTRANT;
+
+
+    /**
+     * 是否以指数退避自旋的方式等待锁，不订阅锁释放的通知，适合等待时间很短而Key很多的场景；
+     * 为false时，等待时间不超过redlock.spin.threshold的锁同样自旋等待
+     *
+     * @return 是否自旋等待锁
+     */
+    boolean spin() default false;
+
+
+    /**
+     * 共享结果的保留时长，单位同timeUnit；大于0时，因锁被他处持有而等待过的调用直接复用持有者的返回结果，不再执行方法，
+     * 仅适用于等待时间大于0且有返回值的同步方法，结果需可由RedissonClient的编解码器序列化
+     *
+     * @return 共享结果的保留时长
+     */
+    long shareResultTime() default 0;
+
+
+    /**
+     * 许可数，即同一Key可同时执行的调用数；大于1时以可过期许可的信号量代替互斥锁，每次调用获取一个许可，
+     * 许可在leaseTime后过期，持有者所在节点宕机时不会一直占用，因此leaseTime需为正数，且不可与mode及shareResultTime同时使用
+     *
+     * @return 许可数
+     */
+    int permits() default 1;
+
+
+    /**
+     * 熔断器打开期间的降级方式：直接失败、不加锁执行或仅加JVM内的本地锁；熔断器默认关闭，由redlock.circuit-breaker.enabled开启
+     *
+     * @return 降级方式
+     */
+    FallbackPolicy fallback() default FallbackPolicy.FAIL_FAST;
+
+
+    /**
+     * 是否以Key最后一个':'之前的命名空间作为hashtag，使批量锁定的同一命名空间的Key位于Redis Cluster的同一slot；
+     * 加hashtag的Key与不加的同名Key是不同的锁，互不排斥，因此锁定同一Key的各操作需一致开启，
+     * 同一命名空间的Key集中于一个slot，仅对需要批量锁定的Key开启
+     *
+     * @return 是否开启hashtag
+     */
+    boolean hashtag() default false;
+
+
+    /**
+     * 是否按redlock.key-routing.stripes将Key拆分为多个子锁，每次调用随机获取其中一个子锁；
+     * 拆分后同一Key最多同时有子锁数个调用执行，锁不再互斥，仅用于可容忍并发的热点Key，且不可与mode、shareResultTime及hashtag同时使用
+     *
+     * @return 是否拆分子锁
+     */
+    boolean striped() default false;
+
+
 }
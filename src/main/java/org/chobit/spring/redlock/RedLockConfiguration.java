@@ -1,70 +1,184 @@
 package org.chobit.spring.redlock;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.chobit.spring.redlock.actuate.RedLocksEndpoint;
+import org.chobit.spring.redlock.deadline.DeadlineProvider;
 import org.chobit.spring.redlock.interceptor.AnnotationRedLockOperationSource;
 import org.chobit.spring.redlock.interceptor.BeanFactoryRedLockOperationSourceAdvisor;
 import org.chobit.spring.redlock.interceptor.RedLockInterceptor;
 import org.chobit.spring.redlock.interceptor.RedLockOperationSource;
+import org.chobit.spring.redlock.interceptor.RedLockTemplate;
+import org.chobit.spring.redlock.metrics.MicrometerRedLockMetrics;
+import org.chobit.spring.redlock.metrics.RedLockMetrics;
+import org.chobit.spring.redlock.observation.MicrometerRedLockObservations;
+import org.chobit.spring.redlock.observation.RedLockObservations;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.chobit.spring.redlock.provider.MultiMasterLockProvider;
+import org.chobit.spring.redlock.provider.RedissonLockProvider;
+import org.chobit.spring.redlock.provider.ResultStore;
+import org.chobit.spring.redlock.routing.DefaultRedLockKeyRouter;
+import org.chobit.spring.redlock.routing.RedLockKeyRouter;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.redisson.config.BaseConfig;
+import org.redisson.config.BaseMasterSlaveServersConfig;
 import org.redisson.config.ClusterServersConfig;
 import org.redisson.config.Config;
+import org.redisson.config.SentinelServersConfig;
 import org.redisson.config.SingleServerConfig;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Role;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static jodd.util.StringUtil.isNotBlank;
 
 /**
  * @author rui.zhang
  */
+@Configuration(proxyBeanMethods = false)
 @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
 @ConditionalOnClass({Redisson.class, RedissonClient.class, RedisProperties.class})
-@EnableConfigurationProperties(RedisProperties.class)
+@EnableConfigurationProperties({RedisProperties.class, RedLockProperties.class, RedLockRedissonProperties.class})
 public class RedLockConfiguration {
 
 
     @Bean
     @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
-    public RedissonClient redissonClient(RedisProperties properties) {
-        int timeout = 10000;
-        if (null != properties.getTimeout()) {
-            timeout = (int) properties.getTimeout().toMillis();
-        }
+    @ConditionalOnProperty(prefix = "redlock", name = "provider", havingValue = "redisson", matchIfMissing = true)
+    @ConditionalOnExpression("'${redlock.redisson.client-bean:}'.isEmpty()")
+    public RedissonClient redissonClient(RedisProperties properties, RedLockRedissonProperties redisson) {
+        int timeout = connectTimeout(properties);
 
-        Config cfg = new Config();
+        Config cfg = createConfig(redisson);
 
-        if (null != properties.getCluster()) {
+        if (null != properties.getSentinel()) {
+            RedisProperties.Sentinel sentinel = properties.getSentinel();
+            SentinelServersConfig ssc = cfg.useSentinelServers()
+                    .setMasterName(sentinel.getMaster())
+                    .addSentinelAddress(convert(sentinel.getNodes()))
+                    .setDatabase(properties.getDatabase());
+            if (isNotBlank(sentinel.getPassword())) {
+                ssc.setSentinelPassword(sentinel.getPassword());
+            }
+            configureMasterSlave(ssc, timeout, properties, redisson);
+        } else if (null != properties.getCluster()) {
             List<String> nodes = properties.getCluster().getNodes();
             ClusterServersConfig csc = cfg.useClusterServers()
-                    .addNodeAddress(convert(nodes))
-                    .setConnectTimeout(timeout);
-            if (isNotBlank(properties.getPassword())) {
-                csc.setPassword(properties.getPassword());
-            }
+                    .addNodeAddress(convert(nodes));
+            configureMasterSlave(csc, timeout, properties, redisson);
         } else {
             String protocol = "redis://";
             if (properties.isSsl()) {
                 protocol = "rediss://";
             }
-            SingleServerConfig ssc = cfg.useSingleServer()
-                    .setAddress(protocol + properties.getHost() + ":" + properties.getPort())
-                    .setConnectTimeout(timeout)
-                    .setDatabase(properties.getDatabase());
-            if (isNotBlank(properties.getPassword())) {
-                ssc.setPassword(properties.getPassword());
-            }
+            useSingleServer(cfg, protocol + properties.getHost() + ":" + properties.getPort(), timeout, properties, redisson);
         }
 
         return Redisson.create(cfg);
     }
 
 
+    private int connectTimeout(RedisProperties properties) {
+        int timeout = 10000;
+        if (null != properties.getTimeout()) {
+            timeout = (int) properties.getTimeout().toMillis();
+        }
+        return timeout;
+    }
+
+
+    private Config createConfig(RedLockRedissonProperties redisson) {
+        Config cfg = new Config()
+                .setThreads(redisson.getThreads())
+                .setNettyThreads(redisson.getNettyThreads());
+        if (null != redisson.getCodec()) {
+            cfg.setCodec(BeanUtils.instantiateClass(redisson.getCodec()));
+        }
+        return cfg;
+    }
+
+
+    private void useSingleServer(Config cfg, String address, int timeout,
+                                 RedisProperties properties, RedLockRedissonProperties redisson) {
+        SingleServerConfig ssc = cfg.useSingleServer()
+                .setAddress(address)
+                .setDatabase(properties.getDatabase())
+                .setConnectionPoolSize(redisson.getConnectionPoolSize())
+                .setConnectionMinimumIdleSize(redisson.getConnectionMinimumIdleSize())
+                .setSubscriptionConnectionPoolSize(redisson.getSubscriptionConnectionPoolSize())
+                .setSubscriptionConnectionMinimumIdleSize(redisson.getSubscriptionConnectionMinimumIdleSize());
+        configureBase(ssc, timeout, properties, redisson);
+    }
+
+
+    private void configureMasterSlave(BaseMasterSlaveServersConfig<?> config, int timeout,
+                                      RedisProperties properties, RedLockRedissonProperties redisson) {
+        config.setMasterConnectionPoolSize(redisson.getConnectionPoolSize());
+        config.setMasterConnectionMinimumIdleSize(redisson.getConnectionMinimumIdleSize());
+        config.setSlaveConnectionPoolSize(redisson.getConnectionPoolSize());
+        config.setSlaveConnectionMinimumIdleSize(redisson.getConnectionMinimumIdleSize());
+        config.setSubscriptionConnectionPoolSize(redisson.getSubscriptionConnectionPoolSize());
+        config.setSubscriptionConnectionMinimumIdleSize(redisson.getSubscriptionConnectionMinimumIdleSize());
+        config.setReadMode(redisson.getReadMode());
+        configureBase(config, timeout, properties, redisson);
+    }
+
+
+    private void configureBase(BaseConfig<?> config, int timeout,
+                               RedisProperties properties, RedLockRedissonProperties redisson) {
+        config.setConnectTimeout(timeout);
+        config.setTimeout((int) redisson.getTimeout().toMillis());
+        config.setRetryAttempts(redisson.getRetryAttempts());
+        config.setRetryInterval((int) redisson.getRetryInterval().toMillis());
+        config.setIdleConnectionTimeout((int) redisson.getIdleConnectionTimeout().toMillis());
+        config.setSubscriptionsPerConnection(redisson.getSubscriptionsPerConnection());
+        if (isNotBlank(properties.getUsername())) {
+            config.setUsername(properties.getUsername());
+        }
+        if (isNotBlank(properties.getPassword())) {
+            config.setPassword(properties.getPassword());
+        }
+    }
+
+
+    /**
+     * Create a client per master of the multi-master mode, sharing the connection and transport settings of the single server.
+     */
+    private List<RedissonClient> createMasters(RedLockProperties.MultiMaster multiMaster,
+                                               RedisProperties properties,
+                                               RedLockRedissonProperties redisson) {
+        List<String> nodes = multiMaster.getNodes();
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException("'redlock.multi-master.nodes' is required when 'redlock.provider' is multi-master.");
+        }
+        int timeout = connectTimeout(properties);
+
+        List<RedissonClient> masters = new ArrayList<>(nodes.size());
+        for (String address : convert(nodes)) {
+            Config cfg = createConfig(redisson);
+            useSingleServer(cfg, address, timeout, properties, redisson);
+            masters.add(Redisson.create(cfg));
+        }
+        return masters;
+    }
+
+
     private String[] convert(List<String> nodes) {
         String[] result = new String[nodes.size()];
         for (int i = 0; i < nodes.size(); i++) {
@@ -79,6 +193,29 @@ public class RedLockConfiguration {
     }
 
 
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnMissingBean
+    public LockProvider lockProvider(RedLockProperties redLockProperties,
+                                     RedisProperties redisProperties,
+                                     RedLockRedissonProperties redissonProperties,
+                                     ObjectProvider<RedissonClient> redissonClient,
+                                     BeanFactory beanFactory) {
+        if (LockProviderType.IN_MEMORY == redLockProperties.getProvider()) {
+            return new InMemoryLockProvider();
+        }
+        if (LockProviderType.MULTI_MASTER == redLockProperties.getProvider()) {
+            RedLockProperties.MultiMaster multiMaster = redLockProperties.getMultiMaster();
+            return new MultiMasterLockProvider(createMasters(multiMaster, redisProperties, redissonProperties),
+                    multiMaster.getNodeTimeout().toMillis(), multiMaster.getClockDriftFactor());
+        }
+        if (isNotBlank(redissonProperties.getClientBean())) {
+            return new RedissonLockProvider(beanFactory.getBean(redissonProperties.getClientBean(), RedissonClient.class));
+        }
+        return new RedissonLockProvider(redissonClient.getObject());
+    }
+
+
     @Bean
     @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
     public RedLockOperationSource redLockOperationSource() {
@@ -88,14 +225,62 @@ public class RedLockConfiguration {
 
     @Bean
     @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
-    public RedLockInterceptor redLockInterceptor(RedLockOperationSource redLockOperationSource, RedissonClient redissonClient) {
+    public RedLockInterceptor redLockInterceptor(RedLockOperationSource redLockOperationSource,
+                                                 LockProvider lockProvider,
+                                                 RedLockProperties redLockProperties,
+                                                 ObjectProvider<RedLockMetrics> redLockMetrics,
+                                                 ObjectProvider<RedLockObservations> redLockObservations,
+                                                 ObjectProvider<ResultStore> resultStore,
+                                                 ObjectProvider<RedLockKeyRouter> keyRouter,
+                                                 ObjectProvider<DeadlineProvider> deadlineProvider,
+                                                 BeanFactory beanFactory) {
         RedLockInterceptor interceptor = new RedLockInterceptor();
         interceptor.setRedLockOperationSource(redLockOperationSource);
-        interceptor.setRedissonClient(redissonClient);
+        interceptor.setLockProvider(lockProvider);
+        interceptor.setLocalCoalescing(redLockProperties.isLocalCoalescing());
+        interceptor.setWaitStrategy(redLockProperties.getWaitStrategy());
+        if (isNotBlank(redLockProperties.getAsyncExecutorBean())) {
+            interceptor.setAsyncExecutor(beanFactory.getBean(redLockProperties.getAsyncExecutorBean(), Executor.class));
+        }
+        interceptor.setRenewalLeaseMillis(redLockProperties.getRenewalLeaseTime().toMillis());
+        interceptor.setEagerInit(redLockProperties.isEagerInit());
+        interceptor.setSpinThresholdMillis(redLockProperties.getSpin().getThreshold().toMillis());
+        interceptor.setSpinBackoffMillis(redLockProperties.getSpin().getInitialBackoff().toMillis(),
+                redLockProperties.getSpin().getMaxBackoff().toMillis());
+        interceptor.setNegativeCache(redLockProperties.getNegativeCache().isEnabled());
+        interceptor.setNegativeCacheMaxSize(redLockProperties.getNegativeCache().getMaxSize());
+        interceptor.setNegativeCacheMaxTtlMillis(redLockProperties.getNegativeCache().getMaxTtl().toMillis());
+        interceptor.setSlowThresholdMillis(redLockProperties.getLogging().getSlowThreshold().toMillis());
+        interceptor.setLogSampleRate(redLockProperties.getLogging().getSampleRate());
+        interceptor.setLogIntervalMillis(redLockProperties.getLogging().getInterval().toMillis());
+        interceptor.setRecentSlowSize(redLockProperties.getLogging().getRecentSlowSize());
+        interceptor.setLiveLocks(redLockProperties.getLiveLocks().isEnabled());
+        RedLockProperties.CircuitBreaker circuitBreaker = redLockProperties.getCircuitBreaker();
+        interceptor.setCircuitBreaker(circuitBreaker.isEnabled());
+        interceptor.setCircuitBreakerWindow(circuitBreaker.getWindowSize(), circuitBreaker.getMinimumCalls());
+        interceptor.setCircuitBreakerFailureRate(circuitBreaker.getFailureRate());
+        interceptor.setCircuitBreakerSlowCall(circuitBreaker.getSlowCallThreshold().toMillis(), circuitBreaker.getLatencyPercentile());
+        interceptor.setCircuitBreakerOpen(circuitBreaker.getOpenDuration().toMillis(), circuitBreaker.getProbes());
+        interceptor.setRedLockMetrics(redLockMetrics.getIfAvailable());
+        interceptor.setRedLockObservations(redLockObservations.getIfAvailable());
+        interceptor.setResultStore(resultStore.getIfAvailable());
+        interceptor.setKeyRouter(keyRouter.getIfAvailable(() -> createKeyRouter(redLockProperties.getKeyRouting())));
+        interceptor.setDeadlineProvider(deadlineProvider.getIfAvailable());
         return interceptor;
     }
 
 
+    /**
+     * The default router of the keys, none if no routing is configured.
+     */
+    private static RedLockKeyRouter createKeyRouter(RedLockProperties.KeyRouting keyRouting) {
+        if (keyRouting.getPrefix().isEmpty() && keyRouting.getStripes().isEmpty()) {
+            return null;
+        }
+        return new DefaultRedLockKeyRouter(keyRouting.getPrefix(), keyRouting.getStripes());
+    }
+
+
     @Bean
     @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
     public BeanFactoryRedLockOperationSourceAdvisor redLockAdvisor(RedLockInterceptor redLockInterceptor,
@@ -107,4 +292,49 @@ public class RedLockConfiguration {
     }
 
 
+    @Bean
+    @ConditionalOnMissingBean
+    public RedLockTemplate redLockTemplate(RedLockInterceptor redLockInterceptor) {
+        return new RedLockTemplate(redLockInterceptor);
+    }
+
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "redlock.metrics", name = "enabled", matchIfMissing = true)
+    static class RedLockMetricsConfiguration {
+
+        @Bean
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public RedLockMetrics redLockMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+            return new MicrometerRedLockMetrics(meterRegistry);
+        }
+    }
+
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.observation.ObservationRegistry")
+    @ConditionalOnProperty(prefix = "redlock.observation", name = "enabled", matchIfMissing = true)
+    static class RedLockObservationConfiguration {
+
+        @Bean
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        public RedLockObservations redLockObservations(ObjectProvider<ObservationRegistry> observationRegistry) {
+            return new MicrometerRedLockObservations(observationRegistry);
+        }
+    }
+
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class RedLocksEndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedLocksEndpoint redLocksEndpoint(RedLockInterceptor redLockInterceptor) {
+            return new RedLocksEndpoint(redLockInterceptor);
+        }
+    }
+
+
 }
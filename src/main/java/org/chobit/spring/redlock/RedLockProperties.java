@@ -0,0 +1,568 @@
+package org.chobit.spring.redlock;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RedLock相关配置
+ *
+ * @author rui.zhang
+ */
+@ConfigurationProperties(prefix = "redlock")
+public class RedLockProperties {
+
+
+    /**
+     * 锁的实现方式，默认基于Redisson
+     */
+    private LockProviderType provider = LockProviderType.REDISSON;
+
+
+    /**
+     * 是否启用JVM内的本地锁合并：同一个key在本进程内只有一个线程竞争Redis锁，其余线程在本地排队并接手已获取的分布式锁
+     */
+    private boolean localCoalescing = false;
+
+
+    /**
+     * 等待锁的方式，在JDK 21虚拟线程上运行时建议使用ASYNC
+     */
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+
+    /**
+     * 异步方法（返回CompletionStage、Mono或Flux）获取锁后执行所用的Executor Bean的名称，默认使用ForkJoinPool.commonPool()，避免业务代码占用Redis客户端的线程
+     */
+    private String asyncExecutorBean;
+
+
+    /**
+     * 自动续期（leaseTime为负数）的锁的租约时长，每隔三分之一租约时长续期一次
+     */
+    private Duration renewalLeaseTime = Duration.ofSeconds(30);
+
+
+    /**
+     * 是否在启动时预解析全部@RedLock注解，Key表达式或时间配置有误时启动失败，并避免首次请求的解析延迟
+     */
+    private boolean eagerInit = true;
+
+
+    /**
+     * 自旋等待锁相关配置
+     */
+    private final Spin spin = new Spin();
+
+
+    /**
+     * 本地缓存近期获取失败的Key相关配置
+     */
+    private final NegativeCache negativeCache = new NegativeCache();
+
+
+    /**
+     * 多主节点Redlock相关配置，provider为MULTI_MASTER时生效
+     */
+    private final MultiMaster multiMaster = new MultiMaster();
+
+
+    /**
+     * 度量相关配置
+     */
+    private final Metrics metrics = new Metrics();
+
+
+    /**
+     * 链路追踪相关配置
+     */
+    private final Observation observation = new Observation();
+
+
+    /**
+     * 日志相关配置
+     */
+    private final Logging logging = new Logging();
+
+
+    /**
+     * 活跃锁登记相关配置
+     */
+    private final LiveLocks liveLocks = new LiveLocks();
+
+
+    /**
+     * Key路由相关配置
+     */
+    private final KeyRouting keyRouting = new KeyRouting();
+
+
+    /**
+     * 获取锁的熔断器相关配置
+     */
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+
+    public LockProviderType getProvider() {
+        return provider;
+    }
+
+    public void setProvider(LockProviderType provider) {
+        this.provider = provider;
+    }
+
+    public boolean isLocalCoalescing() {
+        return localCoalescing;
+    }
+
+    public void setLocalCoalescing(boolean localCoalescing) {
+        this.localCoalescing = localCoalescing;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public String getAsyncExecutorBean() {
+        return asyncExecutorBean;
+    }
+
+    public void setAsyncExecutorBean(String asyncExecutorBean) {
+        this.asyncExecutorBean = asyncExecutorBean;
+    }
+
+    public Duration getRenewalLeaseTime() {
+        return renewalLeaseTime;
+    }
+
+    public void setRenewalLeaseTime(Duration renewalLeaseTime) {
+        this.renewalLeaseTime = renewalLeaseTime;
+    }
+
+    public boolean isEagerInit() {
+        return eagerInit;
+    }
+
+    public void setEagerInit(boolean eagerInit) {
+        this.eagerInit = eagerInit;
+    }
+
+    public Spin getSpin() {
+        return spin;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    public MultiMaster getMultiMaster() {
+        return multiMaster;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Observation getObservation() {
+        return observation;
+    }
+
+    public Logging getLogging() {
+        return logging;
+    }
+
+    public LiveLocks getLiveLocks() {
+        return liveLocks;
+    }
+
+    public KeyRouting getKeyRouting() {
+        return keyRouting;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+
+    public static class Spin {
+
+        /**
+         * 等待时间不超过该值的锁自动以自旋方式等待，不订阅锁释放的通知；为0时仅spin为true的锁自旋
+         */
+        private Duration threshold = Duration.ZERO;
+
+        /**
+         * 首次获取失败后的退避时间，此后每次失败加倍
+         */
+        private Duration initialBackoff = Duration.ofMillis(1);
+
+        /**
+         * 最长退避时间
+         */
+        private Duration maxBackoff = Duration.ofMillis(16);
+
+        public Duration getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(Duration threshold) {
+            this.threshold = threshold;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+
+    public static class NegativeCache {
+
+        /**
+         * 是否启用：waitTime为0的锁获取失败后，在锁过期前本地直接失败，不再访问Redis
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最多缓存的Key数量
+         */
+        private int maxSize = 10000;
+
+        /**
+         * Key的最长缓存时间，锁的剩余时间更长时以此为准
+         */
+        private Duration maxTtl = Duration.ofSeconds(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getMaxTtl() {
+            return maxTtl;
+        }
+
+        public void setMaxTtl(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+    }
+
+
+    public static class MultiMaster {
+
+        /**
+         * 相互独立的Redis主节点地址，如redis://10.0.0.1:6379，建议为不少于3个的奇数个
+         */
+        private List<String> nodes = new ArrayList<>();
+
+        /**
+         * 每次获取锁时单个节点的最长等待时间，应远小于锁的持有时长
+         */
+        private Duration nodeTimeout = Duration.ofMillis(50);
+
+        /**
+         * 节点间的时钟漂移系数，锁的有效时间需扣除持有时长乘以该系数
+         */
+        private double clockDriftFactor = 0.01;
+
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public Duration getNodeTimeout() {
+            return nodeTimeout;
+        }
+
+        public void setNodeTimeout(Duration nodeTimeout) {
+            this.nodeTimeout = nodeTimeout;
+        }
+
+        public double getClockDriftFactor() {
+            return clockDriftFactor;
+        }
+
+        public void setClockDriftFactor(double clockDriftFactor) {
+            this.clockDriftFactor = clockDriftFactor;
+        }
+    }
+
+
+    public static class Metrics {
+
+        /**
+         * 是否启用Micrometer度量，仅在Micrometer存在时生效
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+
+    public static class Observation {
+
+        /**
+         * 是否以Micrometer Observation记录获取锁及持有锁的过程，仅在存在ObservationRegistry时生效
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+
+    public static class Logging {
+
+        /**
+         * 等待锁的时长超过该值时记录日志，并保留在最近的慢获取记录中
+         */
+        private Duration slowThreshold = Duration.ofMillis(100);
+
+        /**
+         * 未超过慢获取阈值的获取锁的日志采样率，0到1之间，为0时不记录
+         */
+        private double sampleRate = 0;
+
+        /**
+         * 同一Key表达式的慢获取日志及失败日志的最小间隔，期间的日志仅计数
+         */
+        private Duration interval = Duration.ofSeconds(1);
+
+        /**
+         * 保留的最近的慢获取记录数
+         */
+        private int recentSlowSize = 128;
+
+        public Duration getSlowThreshold() {
+            return slowThreshold;
+        }
+
+        public void setSlowThreshold(Duration slowThreshold) {
+            this.slowThreshold = slowThreshold;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public int getRecentSlowSize() {
+            return recentSlowSize;
+        }
+
+        public void setRecentSlowSize(int recentSlowSize) {
+            this.recentSlowSize = recentSlowSize;
+        }
+    }
+
+
+    public static class LiveLocks {
+
+        /**
+         * 是否登记本实例持有及等待的锁，供actuator端点查看及强制释放
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+
+    public static class KeyRouting {
+
+        /**
+         * 全部锁的Key的前缀，用于区分共用Redis的应用
+         */
+        private String prefix = "";
+
+        /**
+         * 以指定前缀开头的Key拆分的子锁数，子锁分布于不同的slot，仅对@RedLock(striped = true)的操作生效；
+         * 每次调用随机获取其中一个子锁，同一Key最多同时执行子锁数个调用，锁不再互斥，不可用于需要互斥的Key
+         */
+        private Map<String, Integer> stripes = new LinkedHashMap<>();
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Map<String, Integer> getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(Map<String, Integer> stripes) {
+            this.stripes = stripes;
+        }
+    }
+
+
+    public static class CircuitBreaker {
+
+        /**
+         * 是否启用：Redis异常或过慢时打开熔断器，打开期间不再访问Redis，按@RedLock的fallback降级
+         */
+        private boolean enabled = false;
+
+        /**
+         * 统计失败率及延迟的最近获取锁次数
+         */
+        private int windowSize = 100;
+
+        /**
+         * 熔断器可打开前最少的获取锁次数
+         */
+        private int minimumCalls = 20;
+
+        /**
+         * 获取锁时发生异常的比例达到该值时打开熔断器，0到1之间；锁被他处持有导致的超时不计为失败
+         */
+        private double failureRate = 0.5;
+
+        /**
+         * 不等待锁的获取的延迟分位数超过slowCallThreshold时打开熔断器，0到1之间
+         */
+        private double latencyPercentile = 0.9;
+
+        /**
+         * 不等待锁的获取的慢调用阈值，等待锁的获取耗时主要在于锁被他处持有，不参与延迟统计
+         */
+        private Duration slowCallThreshold = Duration.ofSeconds(1);
+
+        /**
+         * 熔断器打开的时长，此后进入半开状态放行探测请求
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        /**
+         * 半开状态放行的探测请求数，全部成功时关闭熔断器，任一失败或过慢时重新打开
+         */
+        private int probes = 5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        public void setFailureRate(double failureRate) {
+            this.failureRate = failureRate;
+        }
+
+        public double getLatencyPercentile() {
+            return latencyPercentile;
+        }
+
+        public void setLatencyPercentile(double latencyPercentile) {
+            this.latencyPercentile = latencyPercentile;
+        }
+
+        public Duration getSlowCallThreshold() {
+            return slowCallThreshold;
+        }
+
+        public void setSlowCallThreshold(Duration slowCallThreshold) {
+            this.slowCallThreshold = slowCallThreshold;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        public int getProbes() {
+            return probes;
+        }
+
+        public void setProbes(int probes) {
+            this.probes = probes;
+        }
+    }
+}
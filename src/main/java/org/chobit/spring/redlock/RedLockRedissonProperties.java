@@ -0,0 +1,213 @@
+package org.chobit.spring.redlock;
+
+import org.redisson.client.codec.Codec;
+import org.redisson.config.ReadMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * RedLock创建的RedissonClient的传输相关配置，地址、密码等连接信息仍取自spring.redis
+ *
+ * @author rui.zhang
+ */
+@ConfigurationProperties(prefix = "redlock.redisson")
+public class RedLockRedissonProperties {
+
+
+    /**
+     * 复用已有的RedissonClient Bean的名称，设置后不再创建RedissonClient，以下配置均不生效
+     */
+    private String clientBean;
+
+
+    /**
+     * 执行RFuture回调等任务的线程数
+     */
+    private int threads = 16;
+
+
+    /**
+     * Netty的IO线程数
+     */
+    private int nettyThreads = 32;
+
+
+    /**
+     * 编解码器，为空时使用Redisson的默认编解码器
+     */
+    private Class<? extends Codec> codec;
+
+
+    /**
+     * 每个节点的连接池大小，集群及哨兵模式下主从节点均适用
+     */
+    private int connectionPoolSize = 64;
+
+
+    /**
+     * 每个节点的最小空闲连接数
+     */
+    private int connectionMinimumIdleSize = 24;
+
+
+    /**
+     * 每个节点的订阅连接池大小，锁释放的通知经由订阅连接送达，等锁的线程较多时需调大
+     */
+    private int subscriptionConnectionPoolSize = 50;
+
+
+    /**
+     * 每个节点的最小空闲订阅连接数
+     */
+    private int subscriptionConnectionMinimumIdleSize = 1;
+
+
+    /**
+     * 每个订阅连接上的最大订阅数
+     */
+    private int subscriptionsPerConnection = 5;
+
+
+    /**
+     * 等待命令响应的超时时间
+     */
+    private Duration timeout = Duration.ofSeconds(3);
+
+
+    /**
+     * 命令发送失败时的重试次数
+     */
+    private int retryAttempts = 3;
+
+
+    /**
+     * 命令重试的间隔
+     */
+    private Duration retryInterval = Duration.ofMillis(1500);
+
+
+    /**
+     * 空闲连接的关闭时间
+     */
+    private Duration idleConnectionTimeout = Duration.ofSeconds(10);
+
+
+    /**
+     * 集群及哨兵模式下的读取方式
+     */
+    private ReadMode readMode = ReadMode.SLAVE;
+
+
+    public String getClientBean() {
+        return clientBean;
+    }
+
+    public void setClientBean(String clientBean) {
+        this.clientBean = clientBean;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getNettyThreads() {
+        return nettyThreads;
+    }
+
+    public void setNettyThreads(int nettyThreads) {
+        this.nettyThreads = nettyThreads;
+    }
+
+    public Class<? extends Codec> getCodec() {
+        return codec;
+    }
+
+    public void setCodec(Class<? extends Codec> codec) {
+        this.codec = codec;
+    }
+
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    public int getConnectionMinimumIdleSize() {
+        return connectionMinimumIdleSize;
+    }
+
+    public void setConnectionMinimumIdleSize(int connectionMinimumIdleSize) {
+        this.connectionMinimumIdleSize = connectionMinimumIdleSize;
+    }
+
+    public int getSubscriptionConnectionPoolSize() {
+        return subscriptionConnectionPoolSize;
+    }
+
+    public void setSubscriptionConnectionPoolSize(int subscriptionConnectionPoolSize) {
+        this.subscriptionConnectionPoolSize = subscriptionConnectionPoolSize;
+    }
+
+    public int getSubscriptionConnectionMinimumIdleSize() {
+        return subscriptionConnectionMinimumIdleSize;
+    }
+
+    public void setSubscriptionConnectionMinimumIdleSize(int subscriptionConnectionMinimumIdleSize) {
+        this.subscriptionConnectionMinimumIdleSize = subscriptionConnectionMinimumIdleSize;
+    }
+
+    public int getSubscriptionsPerConnection() {
+        return subscriptionsPerConnection;
+    }
+
+    public void setSubscriptionsPerConnection(int subscriptionsPerConnection) {
+        this.subscriptionsPerConnection = subscriptionsPerConnection;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getRetryAttempts() {
+        return retryAttempts;
+    }
+
+    public void setRetryAttempts(int retryAttempts) {
+        this.retryAttempts = retryAttempts;
+    }
+
+    public Duration getRetryInterval() {
+        return retryInterval;
+    }
+
+    public void setRetryInterval(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    public Duration getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(Duration idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+}
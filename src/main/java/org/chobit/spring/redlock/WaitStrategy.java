@@ -0,0 +1,22 @@
+package org.chobit.spring.redlock;
+
+/**
+ * 等待锁的方式
+ *
+ * @author rui.zhang
+ */
+public enum WaitStrategy {
+
+
+    /**
+     * 调用Redisson的阻塞式tryLock等待锁
+     */
+    BLOCKING,
+
+
+    /**
+     * 通过tryLockAsync获取锁，并以LockSupport.park等待结果，不会在虚拟线程上pin住载体线程
+     */
+    ASYNC,
+
+}
@@ -0,0 +1,86 @@
+package org.chobit.spring.redlock.actuate;
+
+import org.chobit.spring.redlock.interceptor.LiveLock;
+import org.chobit.spring.redlock.interceptor.RedLockInterceptor;
+import org.chobit.spring.redlock.interceptor.SlowAcquisition;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * {@link Endpoint @Endpoint} exposing the redLock operations of this instance.
+ *
+ * @author rui.zhang
+ */
+@Endpoint(id = "redlocks")
+public class RedLocksEndpoint {
+
+
+    private final RedLockInterceptor redLockInterceptor;
+
+
+    public RedLocksEndpoint(RedLockInterceptor redLockInterceptor) {
+        this.redLockInterceptor = redLockInterceptor;
+    }
+
+
+    @ReadOperation
+    public RedLocksDescriptor redLocks() {
+        return new RedLocksDescriptor(redLockInterceptor.getLiveLocks(),
+                redLockInterceptor.getRecentSlowAcquisitions(), redLockInterceptor.getCircuitBreakerState());
+    }
+
+
+    /**
+     * Force release a stuck lock, whoever holds it.
+     *
+     * @param key the key of the lock
+     * @return whether the lock was held
+     */
+    @DeleteOperation
+    public boolean releaseLock(@Selector String key) {
+        return redLockInterceptor.forceRelease(key);
+    }
+
+
+    /**
+     * Description of the redLock operations of this instance.
+     */
+    public static final class RedLocksDescriptor {
+
+        private final List<LiveLock> locks;
+
+        private final List<SlowAcquisition> slowAcquisitions;
+
+        @Nullable
+        private final String circuitBreaker;
+
+        private RedLocksDescriptor(List<LiveLock> locks, List<SlowAcquisition> slowAcquisitions,
+                                   @Nullable String circuitBreaker) {
+            this.locks = locks;
+            this.slowAcquisitions = slowAcquisitions;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        public List<LiveLock> getLocks() {
+            return locks;
+        }
+
+        public List<SlowAcquisition> getSlowAcquisitions() {
+            return slowAcquisitions;
+        }
+
+        /**
+         * @return the state of the circuit breaker, null if disabled
+         */
+        @Nullable
+        public String getCircuitBreaker() {
+            return circuitBreaker;
+        }
+    }
+
+}
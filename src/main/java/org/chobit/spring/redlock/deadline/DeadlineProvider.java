@@ -0,0 +1,33 @@
+package org.chobit.spring.redlock.deadline;
+
+/**
+ * 当前调用方的截止时间的来源，RedLock操作等待锁的时长不超过截止时间
+ *
+ * <p>同步方法及返回{@link java.util.concurrent.CompletionStage}的方法在调用线程上获取截止时间；
+ * 返回Reactor Publisher的方法通常在其他线程上订阅，优先读取订阅者Context中{@link #CONTEXT_KEY}对应的截止时间
+ *
+ * @author rui.zhang
+ */
+public interface DeadlineProvider {
+
+
+    /**
+     * 无截止时间
+     */
+    long NO_DEADLINE = Long.MAX_VALUE;
+
+
+    /**
+     * Reactor Context中截止时间的Key，值为以{@link System#nanoTime()}计的截止时间
+     */
+    String CONTEXT_KEY = DeadlineProvider.class.getName();
+
+
+    /**
+     * 获取当前调用剩余的时长
+     *
+     * @return 剩余的纳秒数，已过期时为0或负数，无截止时间时为{@link #NO_DEADLINE}
+     */
+    long remainingNanos();
+
+}
@@ -0,0 +1,68 @@
+package org.chobit.spring.redlock.deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取绑定于当前线程的截止时间的{@link DeadlineProvider}，如由Servlet Filter绑定：
+ *
+ * <pre class="code">
+ * try (ThreadLocalDeadlineProvider.Scope scope = ThreadLocalDeadlineProvider.withTimeout(2, TimeUnit.SECONDS)) {
+ *     chain.doFilter(request, response);
+ * }
+ * </pre>
+ *
+ * @author rui.zhang
+ */
+public class ThreadLocalDeadlineProvider implements DeadlineProvider {
+
+
+    /**
+     * 以{@link System#nanoTime()}表示的截止时间，存于数组中以免绑定时装箱
+     */
+    private static final ThreadLocal<long[]> DEADLINE = ThreadLocal.withInitial(() -> new long[]{NO_DEADLINE});
+
+
+    /**
+     * 为当前线程绑定超时后的截止时间，直至scope关闭
+     *
+     * @param timeout 超时时长
+     * @param unit    超时时长的时间单位
+     * @return scope，关闭后恢复之前的截止时间
+     */
+    public static Scope withTimeout(long timeout, TimeUnit unit) {
+        return withDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+
+    /**
+     * 为当前线程绑定截止时间，直至scope关闭
+     *
+     * @param deadlineNanos 以{@link System#nanoTime()}表示的截止时间
+     * @return scope，关闭后恢复之前的截止时间
+     */
+    public static Scope withDeadline(long deadlineNanos) {
+        long[] deadline = DEADLINE.get();
+        long previous = deadline[0];
+        deadline[0] = deadlineNanos;
+        return () -> deadline[0] = previous;
+    }
+
+
+    @Override
+    public long remainingNanos() {
+        long deadline = DEADLINE.get()[0];
+        return (NO_DEADLINE == deadline ? NO_DEADLINE : deadline - System.nanoTime());
+    }
+
+
+    /**
+     * 截止时间与线程的绑定
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+}
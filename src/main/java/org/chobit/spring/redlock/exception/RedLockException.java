@@ -6,11 +6,46 @@ package org.chobit.spring.redlock.exception;
  */
 public class RedLockException extends RuntimeException {
 
+    /**
+     * 锁的Key，读取异常信息时才拼接到信息之后
+     */
+    private final String key;
+
     public RedLockException() {
+        this.key = null;
     }
 
 
     public RedLockException(String message) {
         super(message);
+        this.key = null;
+    }
+
+
+    public RedLockException(String message, Throwable cause) {
+        super(message, cause);
+        this.key = null;
+    }
+
+
+    /**
+     * @param message 异常信息，之后拼接锁的Key
+     * @param key     锁的Key
+     */
+    public RedLockException(String message, String key) {
+        super(message);
+        this.key = key;
+    }
+
+
+    public String getKey() {
+        return key;
+    }
+
+
+    @Override
+    public String getMessage() {
+        String message = super.getMessage();
+        return (null != key ? message + key : message);
     }
 }
@@ -1,5 +1,7 @@
 package org.chobit.spring.redlock.interceptor;
 
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.chobit.spring.redlock.LockMode;
 import org.chobit.spring.redlock.RedLock;
 import org.springframework.core.BridgeMethodResolver;
 import org.springframework.core.MethodClassKey;
@@ -43,18 +45,12 @@ public class AnnotationRedLockOperationSource implements RedLockOperationSource,
 
         Object cacheKey = getCacheKey(method, targetClass);
 
-        if (!attrCache.containsKey(cacheKey)) {
-            RedLockOperation attr = computeRedLockAttribute(method, targetClass);
-            if (null == attr) {
-                attrCache.put(cacheKey, Optional.empty());
-                return null;
-            }
-            attrCache.put(cacheKey, Optional.of(attr));
-            return attr;
-        } else {
-            Optional<RedLockOperation> opt = attrCache.get(cacheKey);
-            return opt.orElse(null);
+        Optional<RedLockOperation> opt = attrCache.get(cacheKey);
+        if (null == opt) {
+            opt = Optional.ofNullable(computeRedLockAttribute(method, targetClass));
+            attrCache.put(cacheKey, opt);
         }
+        return opt.orElse(null);
     }
 
     private RedLockOperation computeRedLockAttribute(Method method, Class<?> targetClass) {
@@ -69,7 +65,7 @@ public class AnnotationRedLockOperationSource implements RedLockOperationSource,
         specificMethod = BridgeMethodResolver.findBridgedMethod(specificMethod);
 
         if (specificMethod != method) {
-            attr = computeRedLockAttribute(method);
+            attr = computeRedLockAttribute(specificMethod);
             return attr;
         }
         return null;
@@ -99,6 +95,13 @@ public class AnnotationRedLockOperationSource implements RedLockOperationSource,
         Long leaseTime = attributes.getNumber("leaseTime");
         TimeUnit unit = (TimeUnit) attributes.get("timeUnit");
         boolean finallyRelease = attributes.getBoolean("finallyRelease");
+        LockMode mode = attributes.getEnum("mode");
+        boolean spin = attributes.getBoolean("spin");
+        Long shareResultTime = attributes.getNumber("shareResultTime");
+        Integer permits = attributes.getNumber("permits");
+        FallbackPolicy fallback = attributes.getEnum("fallback");
+        boolean hashtag = attributes.getBoolean("hashtag");
+        boolean striped = attributes.getBoolean("striped");
 
         RedLockOperation attr = new RedLockOperation();
         attr.setKey(key);
@@ -106,6 +109,13 @@ public class AnnotationRedLockOperationSource implements RedLockOperationSource,
         attr.setLeaseTime(leaseTime);
         attr.setTimeUnit(unit);
         attr.setFinallyRelease(finallyRelease);
+        attr.setMode(mode);
+        attr.setSpin(spin);
+        attr.setShareResultTime(shareResultTime);
+        attr.setPermits(permits);
+        attr.setFallback(fallback);
+        attr.setHashtag(hashtag);
+        attr.setStriped(striped);
         
         return attr;
     }
@@ -0,0 +1,503 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.deadline.DeadlineProvider;
+import org.chobit.spring.redlock.exception.RedLockException;
+import org.chobit.spring.redlock.metrics.RedLockMeters;
+import org.chobit.spring.redlock.observation.RedLockObserver;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * Non-blocking execution of the redLock operations on methods returning a
+ * {@link CompletionStage}, a {@link Mono} or a {@link Flux}.
+ *
+ * <p>The lock is acquired with {@link LockHandle#tryLockAsync(long, long, TimeUnit, long)} and held by an
+ * owner id instead of the calling thread, the method is invoked once the lock is acquired, and the lock
+ * is released with {@link LockHandle#unlockAsync(long)} only when the returned future or publisher terminates.
+ * No thread is blocked while waiting for the lock.
+ *
+ * <p>The lock operations complete on the threads of the Redis client, which must never run the methods nor
+ * the callbacks of their callers. The method is invoked, and the result completed, on the given executor
+ * unless the lock operation already completed on the calling thread.
+ *
+ * @author rui.zhang
+ */
+final class AsyncRedLockExecutor {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRedLockExecutor.class);
+
+    private static final boolean reactorPresent =
+            ClassUtils.isPresent("reactor.core.publisher.Mono", AsyncRedLockExecutor.class.getClassLoader());
+
+    private final LockProvider lockProvider;
+
+    /**
+     * Provider of the locks waited for by spinning
+     */
+    private final LockProvider backoffLockProvider;
+
+    private final LeaseRenewer leaseRenewer;
+
+    private final RedLockLogPolicy logPolicy;
+
+    @Nullable
+    private final LiveLockRegistry liveLockRegistry;
+
+    @Nullable
+    private final DeadlineProvider deadlineProvider;
+
+    @Nullable
+    private final RedLockCircuitBreaker circuitBreaker;
+
+    /**
+     * Provider of the local locks the operations fall back to while the circuit breaker is open
+     */
+    @Nullable
+    private final LockProvider localLockProvider;
+
+    /**
+     * The executor the methods are invoked on, off the threads of the Redis client
+     */
+    private final Executor executor;
+
+    /**
+     * The scheduler over the executor, a Scheduler if Reactor is present
+     */
+    @Nullable
+    private final Object scheduler;
+
+
+    AsyncRedLockExecutor(LockProvider lockProvider, LockProvider backoffLockProvider,
+                         LeaseRenewer leaseRenewer, RedLockLogPolicy logPolicy,
+                         @Nullable LiveLockRegistry liveLockRegistry,
+                         @Nullable DeadlineProvider deadlineProvider,
+                         @Nullable RedLockCircuitBreaker circuitBreaker,
+                         @Nullable LockProvider localLockProvider,
+                         Executor executor) {
+        this.executor = executor;
+        this.scheduler = (reactorPresent ? ReactorDelegate.scheduler(executor) : null);
+        this.lockProvider = lockProvider;
+        this.backoffLockProvider = backoffLockProvider;
+        this.leaseRenewer = leaseRenewer;
+        this.logPolicy = logPolicy;
+        this.liveLockRegistry = liveLockRegistry;
+        this.deadlineProvider = deadlineProvider;
+        this.circuitBreaker = circuitBreaker;
+        this.localLockProvider = localLockProvider;
+    }
+
+
+    /**
+     * Whether the methods returning the type should be locked asynchronously.
+     *
+     * @param returnType the return type of the method
+     * @return true if the return type is a supported asynchronous type
+     */
+    static boolean isAsync(Class<?> returnType) {
+        if (CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class)) {
+            return true;
+        }
+        return reactorPresent && ReactorDelegate.isReactive(returnType);
+    }
+
+
+    Object execute(RedLockOperationInvoker invoker,
+                   Class<?> returnType,
+                   String key,
+                   @Nullable String[] keys,
+                   String name,
+                   RedLockOperation operation,
+                   RedLockMeters meters,
+                   RedLockObserver observer,
+                   boolean spin) {
+        if (reactorPresent && ReactorDelegate.isReactive(returnType)) {
+            return ReactorDelegate.execute(this, invoker, returnType, key, keys, name, operation, meters, observer, spin);
+        }
+        return executeFuture(invoker, new AsyncLease(key, keys, name, operation, meters, observer, spin));
+    }
+
+
+    private long remainingNanos() {
+        return (null != deadlineProvider ? deadlineProvider.remainingNanos() : DeadlineProvider.NO_DEADLINE);
+    }
+
+
+    private Object executeFuture(RedLockOperationInvoker invoker, AsyncLease lease) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        whenComplete(lease.acquire(remainingNanos()), (l, ex) -> {
+            if (null != ex) {
+                result.completeExceptionally(unwrap(ex));
+                return;
+            }
+            CompletionStage<?> stage;
+            try {
+                stage = (CompletionStage<?>) invoker.invoke();
+            } catch (RedLockOperationInvoker.WrappedThrowableException e) {
+                whenComplete(lease.error(e.getOriginal()).release(), (v, x) -> result.completeExceptionally(e.getOriginal()));
+                return;
+            }
+            if (null == stage) {
+                whenComplete(lease.release(), (v, x) -> result.complete(null));
+                return;
+            }
+            stage.whenComplete((value, error) -> whenComplete((null != error ? lease.error(unwrap(error)) : lease).release(), (v, x) -> {
+                if (null != error) {
+                    result.completeExceptionally(unwrap(error));
+                } else {
+                    result.complete(value);
+                }
+            }));
+        });
+        return result;
+    }
+
+
+    /**
+     * Run the action on the calling thread if the stage is already completed, on the executor otherwise,
+     * since the pending lock operations complete on the threads of the Redis client.
+     */
+    private <T> void whenComplete(CompletionStage<T> stage, BiConsumer<? super T, ? super Throwable> action) {
+        CompletableFuture<T> future = stage.toCompletableFuture();
+        if (future.isDone()) {
+            future.whenComplete(action);
+        } else {
+            future.whenCompleteAsync(action, executor);
+        }
+    }
+
+
+    private static Throwable unwrap(Throwable ex) {
+        return (ex instanceof CompletionException && null != ex.getCause()) ? ex.getCause() : ex;
+    }
+
+
+    /**
+     * A lock held by an owner id for the lifetime of one asynchronous invocation.
+     */
+    private final class AsyncLease {
+
+        private final String key;
+
+        @Nullable
+        private final String[] keys;
+
+        private final String name;
+
+        private final RedLockOperation operation;
+
+        private final RedLockMeters meters;
+
+        private final RedLockObserver observer;
+
+        private final boolean spin;
+
+        private RedLockObserver.Span span = RedLockObserver.Span.NOOP;
+
+        @Nullable
+        private LockHandle lock;
+
+        @Nullable
+        private MultiKeyLock multiLock;
+
+        /**
+         * Whether the method is invoked without the lock, the circuit breaker being open
+         */
+        private boolean unlocked;
+
+        private final long ownerId = RedLockOwnerIds.next();
+
+        private long lockTime;
+
+        @Nullable
+        private LeaseRenewer.Renewal renewal;
+
+        @Nullable
+        private LiveLockRegistry.Holder holder;
+
+        /**
+         * Completed with this lease once acquired, cancelled if nobody waits for it anymore
+         */
+        private final CompletableFuture<AsyncLease> granted = new CompletableFuture<>();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private AsyncLease(String key, @Nullable String[] keys, String name, RedLockOperation operation,
+                           RedLockMeters meters, RedLockObserver observer, boolean spin) {
+            this.key = key;
+            this.keys = keys;
+            this.name = name;
+            this.operation = operation;
+            this.meters = meters;
+            this.observer = observer;
+            this.spin = spin;
+        }
+
+        /**
+         * @param remainingNanos the time left to the caller, which caps the wait
+         */
+        private CompletionStage<AsyncLease> acquire(long remainingNanos) {
+            this.span = observer.startAsync();
+            if (remainingNanos <= 0) {
+                meters.timeout(0);
+                span.timeout();
+                span.end(0);
+                logPolicy.timeout(operation.getKey(), key, 0);
+                granted.completeExceptionally(new RedLockException("deadline exceeded, failed to lock with key:", key));
+                return granted;
+            }
+            long beginTime = System.nanoTime();
+            long waitTime = operation.getWaitTime();
+            long leaseTime = operation.getLeaseTime();
+            TimeUnit timeUnit = operation.getTimeUnit();
+            boolean autoRenew = (leaseTime < 0);
+            if (autoRenew) {
+                waitTime = timeUnit.toMillis(waitTime);
+                leaseTime = leaseRenewer.getLeaseMillis();
+                timeUnit = TimeUnit.MILLISECONDS;
+            }
+            if (remainingNanos < timeUnit.toNanos(waitTime)) {
+                waitTime = TimeUnit.NANOSECONDS.toMillis(remainingNanos);
+                leaseTime = Math.max(1, timeUnit.toMillis(leaseTime));
+                timeUnit = TimeUnit.MILLISECONDS;
+            }
+            boolean degraded = (null != circuitBreaker && !circuitBreaker.tryAcquirePermission());
+            if (degraded) {
+                FallbackPolicy fallback = operation.getFallback();
+                logPolicy.degraded(operation.getKey(), key, fallback);
+                if (FallbackPolicy.FAIL_FAST == fallback) {
+                    RedLockException e = new RedLockException("circuit breaker open, failed to lock with key:", key);
+                    meters.failed(0);
+                    span.failed(e);
+                    span.end(0);
+                    granted.completeExceptionally(e);
+                    return granted;
+                }
+                if (FallbackPolicy.PROCEED_UNLOCKED == fallback) {
+                    meters.degraded();
+                    span.skipped();
+                    this.unlocked = true;
+                    granted.complete(this);
+                    return granted;
+                }
+                // the local locks are not renewed, they are held until released
+                leaseTime = (autoRenew ? -1 : leaseTime);
+            }
+            RedLockCircuitBreaker breaker = (degraded ? null : circuitBreaker);
+            LockMode mode = operation.getMode();
+            LockProvider provider = (degraded ? localLockProvider : spin ? backoffLockProvider : lockProvider);
+            int permits = operation.getPermits();
+            this.lock = (null == keys ? provider.getLock(key, mode, permits) : null);
+            this.multiLock = (null != keys ? new MultiKeyLock(provider, keys, mode, permits) : null);
+            boolean waited = (waitTime > 0);
+            boolean waits = (null != liveLockRegistry && waited);
+            if (waits) {
+                liveLockRegistry.waiting(key, keys);
+            }
+            CompletionStage<Boolean> acquired = (null != multiLock ?
+                    multiLock.tryLockAsync(waitTime, leaseTime, timeUnit, ownerId) :
+                    lock.tryLockAsync(waitTime, leaseTime, timeUnit, ownerId));
+            long leaseMillis = (autoRenew ? -1 : timeUnit.toMillis(leaseTime));
+            // handed on through a future of its own, so that the handling runs even if the caller cancels
+            acquired.handle((locked, ex) -> {
+                long now = System.nanoTime();
+                if (waits && (null != ex || !locked)) {
+                    liveLockRegistry.notAcquired(key, keys);
+                }
+                if (null != breaker && null != ex) {
+                    breaker.onFailure();
+                } else if (null != breaker) {
+                    breaker.onSuccess(now - beginTime, waited);
+                }
+                if (null != ex) {
+                    meters.failed(now - beginTime);
+                    span.failed(unwrap(ex));
+                    span.end(1);
+                    logPolicy.failed(operation.getKey(), key, unwrap(ex));
+                    throw new CompletionException(unwrap(ex));
+                }
+                if (!locked) {
+                    meters.timeout(now - beginTime);
+                    span.timeout();
+                    span.end(1);
+                    logPolicy.timeout(operation.getKey(), key, now - beginTime);
+                    throw new RedLockException("failed to lock with key:", key);
+                }
+                meters.acquired(now - beginTime);
+                span.acquired();
+                logPolicy.acquired(operation.getKey(), key, now - beginTime);
+                if (null != liveLockRegistry) {
+                    this.holder = liveLockRegistry.acquired(key, keys, waits, name, operation.getMode(),
+                            operation.getPermits(), ownerId, leaseMillis);
+                }
+                logger.debug("lock succeed with key: {}", key);
+                this.lockTime = now;
+                if (autoRenew && !degraded) {
+                    this.renewal = leaseRenewer.register(ownerId, operation.getMode(), null != keys ? keys : new String[]{key});
+                }
+                return this;
+            }).whenComplete((l, ex) -> {
+                if (null != ex) {
+                    granted.completeExceptionally(unwrap(ex));
+                } else if (!granted.complete(l)) {
+                    // nobody waits for the lock anymore
+                    release();
+                }
+            });
+            return granted;
+        }
+
+        /**
+         * Release the lock as soon as it is acquired, or at once if acquired already, since nobody is
+         * waiting for it anymore: a lease granted but not delivered yet would be dropped otherwise.
+         */
+        private void cancel() {
+            if (!granted.cancel(false) && !granted.isCompletedExceptionally()) {
+                release();
+            }
+        }
+
+        /**
+         * Observe the error of the method holding the lock, before the lock is released.
+         */
+        private AsyncLease error(Throwable error) {
+            span.error(error);
+            return this;
+        }
+
+        private CompletionStage<Void> release() {
+            if (!released.compareAndSet(false, true)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (unlocked) {
+                span.end(0);
+                return CompletableFuture.completedFuture(null);
+            }
+            long holdTime = System.nanoTime() - lockTime;
+            long leaseTime = operation.getLeaseTime();
+            meters.released(holdTime, leaseTime > 0 && holdTime > operation.getTimeUnit().toNanos(leaseTime));
+            if (null != holder) {
+                liveLockRegistry.released(holder);
+            }
+            if (null != renewal) {
+                leaseRenewer.cancel(renewal);
+            }
+            if (!operation.isFinallyRelease()) {
+                span.end(1);
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletionStage<Void> released = (null != multiLock ?
+                    multiLock.unlockAsync(ownerId) : lock.unlockAsync(ownerId));
+            return released.handle((v, ex) -> {
+                span.end(2);
+                if (null != ex) {
+                    logger.error("failed to unlock with key: {}", key, ex);
+                } else {
+                    logger.debug("unlock with the key: {}", key);
+                }
+                return null;
+            });
+        }
+    }
+
+
+    /**
+     * Inner class to avoid a hard dependency on Reactor at runtime.
+     */
+    private static final class ReactorDelegate {
+
+        private static boolean isReactive(Class<?> returnType) {
+            return Mono.class == returnType || Flux.class == returnType;
+        }
+
+        private static Publisher<?> execute(AsyncRedLockExecutor executor,
+                                            RedLockOperationInvoker invoker,
+                                            Class<?> returnType,
+                                            String key,
+                                            @Nullable String[] keys,
+                                            String name,
+                                            RedLockOperation operation,
+                                            RedLockMeters meters,
+                                            RedLockObserver observer,
+                                            boolean spin) {
+            if (Mono.class == returnType) {
+                return Mono.deferContextual(context -> {
+                    AsyncLease lease = executor.new AsyncLease(key, keys, name, operation, meters, observer, spin);
+                    Scheduler scheduler = (Scheduler) executor.scheduler;
+                    return Mono.usingWhen(acquire(lease, remainingNanos(executor, context), scheduler),
+                            l -> Mono.from(invoke(invoker)),
+                            l -> release(l, scheduler),
+                            (l, e) -> release(l.error(e), scheduler),
+                            l -> release(l, scheduler));
+                });
+            }
+            return Flux.deferContextual(context -> {
+                AsyncLease lease = executor.new AsyncLease(key, keys, name, operation, meters, observer, spin);
+                Scheduler scheduler = (Scheduler) executor.scheduler;
+                return Flux.usingWhen(acquire(lease, remainingNanos(executor, context), scheduler),
+                        l -> invoke(invoker),
+                        l -> release(l, scheduler),
+                        (l, e) -> release(l.error(e), scheduler),
+                        l -> release(l, scheduler));
+            });
+        }
+
+        private static Scheduler scheduler(Executor executor) {
+            return Schedulers.fromExecutor(executor);
+        }
+
+        private static Mono<AsyncLease> acquire(AsyncLease lease, long remainingNanos, Scheduler scheduler) {
+            return publishOn(lease.acquire(remainingNanos), scheduler).doOnCancel(lease::cancel);
+        }
+
+        /**
+         * The deadline in the subscriber context first, the subscription may run on any thread.
+         */
+        private static long remainingNanos(AsyncRedLockExecutor executor, ContextView context) {
+            Long deadline = context.getOrDefault(DeadlineProvider.CONTEXT_KEY, null);
+            return (null != deadline ? deadline - System.nanoTime() : executor.remainingNanos());
+        }
+
+        private static Mono<Void> release(AsyncLease lease, Scheduler scheduler) {
+            return Mono.defer(() -> publishOn(lease.release(), scheduler));
+        }
+
+        /**
+         * Signal on the scheduler, unless the stage is already completed on the subscribing thread.
+         */
+        private static <T> Mono<T> publishOn(CompletionStage<T> stage, Scheduler scheduler) {
+            Mono<T> mono = Mono.fromCompletionStage(stage);
+            return (stage.toCompletableFuture().isDone() ? mono : mono.publishOn(scheduler));
+        }
+
+        private static Publisher<?> invoke(RedLockOperationInvoker invoker) {
+            try {
+                Publisher<?> publisher = (Publisher<?>) invoker.invoke();
+                return (null != publisher ? publisher : Mono.empty());
+            } catch (RedLockOperationInvoker.WrappedThrowableException e) {
+                return Mono.error(e.getOriginal());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.provider.LockProvider;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache of the keys known to be held elsewhere, so that the attempts without waiting
+ * fail in-process instead of asking the lock backend again.
+ *
+ * <p>Filled from the remaining time to live of the lock after a failed attempt, capped by
+ * a max ttl since the holder may release it earlier. The entry is put pending before the ttl is
+ * asked, so that the concurrent failures on the key ask only once, and the answer fills that very
+ * entry: once the key is acquired or released here the entry is gone, and a late answer is dropped
+ * instead of recording the key again. The size is bounded, expired entries are evicted first and
+ * then arbitrary ones.
+ *
+ * @author rui.zhang
+ */
+final class HeldKeyCache {
+
+
+    private final LockProvider lockProvider;
+
+    private final int maxSize;
+
+    private final long maxTtlNanos;
+
+    private final Map<String, Entry> heldUntil;
+
+
+    HeldKeyCache(LockProvider lockProvider, int maxSize, long maxTtlMillis) {
+        this.lockProvider = lockProvider;
+        this.maxSize = maxSize;
+        this.maxTtlNanos = TimeUnit.MILLISECONDS.toNanos(maxTtlMillis);
+        this.heldUntil = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+
+    /**
+     * Whether the lock mode is exclusive among the modes using the key, so that a failed attempt
+     * tells the key is held for every caller.
+     *
+     * @param mode the lock mode
+     * @return true if the failures in the mode can be cached
+     */
+    static boolean isCacheable(LockMode mode) {
+        return LockMode.READ != mode && LockMode.WRITE != mode;
+    }
+
+
+    boolean isHeld(String key) {
+        Entry entry = heldUntil.get(key);
+        if (null == entry || !entry.resolved) {
+            return false;
+        }
+        if (System.nanoTime() - entry.until < 0) {
+            return true;
+        }
+        heldUntil.remove(key, entry);
+        return false;
+    }
+
+
+    /**
+     * Record the key held elsewhere after a failed attempt, until the lock expires.
+     */
+    void held(String key, LockMode mode) {
+        long now = System.nanoTime();
+        // pending until the ttl is known, for the max ttl at most in case it never is
+        Entry entry = new Entry(now + maxTtlNanos);
+        Entry previous = heldUntil.get(key);
+        if (null != previous && now - previous.until < 0) {
+            return;
+        }
+        if (null == previous && heldUntil.size() >= maxSize) {
+            evict();
+        }
+        if (null == previous ? null != heldUntil.putIfAbsent(key, entry) : !heldUntil.replace(key, previous, entry)) {
+            return;
+        }
+        lockProvider.getLock(key, mode).remainTimeToLiveAsync().whenComplete((pttl, ex) -> {
+            // -2 means the lock is released already, -1 means it never expires
+            long ttlNanos = (null != ex || null == pttl || -2 == pttl ? 0 :
+                    pttl < 0 ? maxTtlNanos : Math.min(TimeUnit.MILLISECONDS.toNanos(pttl), maxTtlNanos));
+            if (ttlNanos <= 0) {
+                heldUntil.remove(key, entry);
+                return;
+            }
+            // a no-op if the entry was removed meanwhile
+            entry.resolve(System.nanoTime() + ttlNanos);
+        });
+    }
+
+
+    /**
+     * Forget the key once it is acquired by this JVM.
+     */
+    void acquired(String key) {
+        if (!heldUntil.isEmpty()) {
+            heldUntil.remove(key);
+        }
+    }
+
+
+    /**
+     * Forget the key once released by this JVM, it may have been recorded by the failed attempts
+     * of the other threads while held here.
+     */
+    void released(String key) {
+        if (!heldUntil.isEmpty()) {
+            heldUntil.remove(key);
+        }
+    }
+
+
+    private void evict() {
+        long now = System.nanoTime();
+        heldUntil.values().removeIf(entry -> now - entry.until >= 0);
+        Iterator<String> it = heldUntil.keySet().iterator();
+        while (heldUntil.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+
+    /**
+     * A key recorded held, compared by identity, so that only the attempt which put it fills it.
+     */
+    private static final class Entry {
+
+        private volatile long until;
+
+        /**
+         * Whether the ttl is known, written after the until
+         */
+        private volatile boolean resolved;
+
+        private Entry(long until) {
+            this.until = until;
+        }
+
+        private void resolve(long until) {
+            this.until = until;
+            this.resolved = true;
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.metrics.RedLockMetrics;
+import org.chobit.spring.redlock.provider.LockLease;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renew the leases of the locks acquired in the auto renew mode, i.e. with a negative lease time.
+ *
+ * <p>Instead of a timer per lock, a single shared thread ticks every third of the lease time,
+ * and the renewals of all the locks held at a tick are sent to the lock provider as one batch.
+ * A lease is renewed only while the lock is still held by the same owner.
+ *
+ * @author rui.zhang
+ */
+final class LeaseRenewer {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseRenewer.class);
+
+    private final LockProvider lockProvider;
+
+    private final long leaseMillis;
+
+    private final long intervalNanos;
+
+    @Nullable
+    private final RedLockMetrics metrics;
+
+    private final Set<Renewal> renewals = ConcurrentHashMap.newKeySet();
+
+    @Nullable
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * Only accessed by the scheduler thread.
+     */
+    private long nextDue;
+
+
+    LeaseRenewer(LockProvider lockProvider, long leaseMillis, @Nullable RedLockMetrics metrics) {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException("The lease time of auto renewed locks must be positive: " + leaseMillis);
+        }
+        this.lockProvider = lockProvider;
+        this.leaseMillis = leaseMillis;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis) / 3;
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * The lease time given to the auto renewed locks when they are acquired or renewed.
+     *
+     * @return the lease time in milliseconds
+     */
+    long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+
+    /**
+     * Keep renewing the leases of the keys until the renewal is cancelled.
+     *
+     * @param ownerId the owner of the keys
+     * @param mode    the lock mode of the keys
+     * @param keys    the keys held by the owner
+     * @return the renewal
+     */
+    Renewal register(long ownerId, LockMode mode, String... keys) {
+        LockLease[] leases = new LockLease[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            leases[i] = new LockLease(keys[i], mode, ownerId);
+        }
+        Renewal renewal = new Renewal(leases);
+        renewals.add(renewal);
+        if (null == scheduler) {
+            start();
+        }
+        return renewal;
+    }
+
+
+    void cancel(Renewal renewal) {
+        renewals.remove(renewal);
+    }
+
+
+    void shutdown() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    private synchronized void start() {
+        if (null != scheduler) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redlock-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nextDue = System.nanoTime() + intervalNanos;
+        scheduler.scheduleAtFixedRate(this::renew, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        this.scheduler = scheduler;
+    }
+
+
+    private void renew() {
+        long due = this.nextDue;
+        this.nextDue += intervalNanos;
+        if (renewals.isEmpty()) {
+            return;
+        }
+
+        List<Renewal> batched = new ArrayList<>(renewals.size());
+        List<LockLease> leases = new ArrayList<>(renewals.size());
+        try {
+            for (Renewal renewal : renewals) {
+                batched.add(renewal);
+                leases.addAll(Arrays.asList(renewal.leases));
+            }
+
+            lockProvider.renewAsync(leases, leaseMillis).whenComplete((renewed, ex) -> {
+                if (null != ex) {
+                    logger.error("failed to renew the leases of redis locks", ex);
+                    return;
+                }
+                if (null != metrics) {
+                    metrics.renewed(System.nanoTime() - due);
+                }
+                checkRenewed(batched, renewed);
+            });
+        } catch (RuntimeException e) {
+            // keep the scheduled task alive, the leases are renewed again at the next tick
+            logger.error("failed to renew the leases of redis locks", e);
+        }
+    }
+
+
+    /**
+     * Stop renewing the locks which are not held anymore, e.g. released elsewhere or expired during a long pause.
+     */
+    private void checkRenewed(List<Renewal> batched, boolean[] renewed) {
+        int index = 0;
+        for (Renewal renewal : batched) {
+            for (LockLease lease : renewal.leases) {
+                if (!renewed[index++] && renewals.remove(renewal)) {
+                    logger.warn("the lease of redis lock is lost before release, key: {}", lease.getKey());
+                    if (null != metrics) {
+                        metrics.leaseLost();
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Registration of the keys renewed for an owner.
+     */
+    static final class Renewal {
+
+        private final LockLease[] leases;
+
+        private Renewal(LockLease[] leases) {
+            this.leases = leases;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+
+import java.util.List;
+
+/**
+ * A key locked or waited for by this instance at the time it was read.
+ *
+ * @author rui.zhang
+ */
+public final class LiveLock {
+
+
+    /**
+     * 锁的Key
+     */
+    private final String key;
+
+    /**
+     * 本实例中等待该Key的调用数
+     */
+    private final int waiting;
+
+    /**
+     * 本实例中持有该Key的调用
+     */
+    private final List<Holder> holders;
+
+
+    LiveLock(String key, int waiting, List<Holder> holders) {
+        this.key = key;
+        this.waiting = waiting;
+        this.holders = holders;
+    }
+
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public List<Holder> getHolders() {
+        return holders;
+    }
+
+
+    /**
+     * An invocation holding the lock.
+     */
+    public static final class Holder {
+
+        /**
+         * 注解所在方法
+         */
+        private final String method;
+
+        private final LockMode mode;
+
+        /**
+         * 许可数，互斥锁为1
+         */
+        private final int permits;
+
+        /**
+         * 持有者ID，同步调用时为线程ID
+         */
+        private final long ownerId;
+
+        /**
+         * 获取锁的线程
+         */
+        private final String thread;
+
+        /**
+         * 获取锁的时间戳，单位毫秒
+         */
+        private final long acquiredAt;
+
+        /**
+         * 锁过期的时间戳，单位毫秒，自动续期时为-1
+         */
+        private final long leaseDeadline;
+
+        Holder(String method, LockMode mode, int permits, long ownerId, String thread, long acquiredAt, long leaseDeadline) {
+            this.method = method;
+            this.mode = mode;
+            this.permits = permits;
+            this.ownerId = ownerId;
+            this.thread = thread;
+            this.acquiredAt = acquiredAt;
+            this.leaseDeadline = leaseDeadline;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public LockMode getMode() {
+            return mode;
+        }
+
+        public int getPermits() {
+            return permits;
+        }
+
+        public long getOwnerId() {
+            return ownerId;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public long getAcquiredAt() {
+            return acquiredAt;
+        }
+
+        public long getLeaseDeadline() {
+            return leaseDeadline;
+        }
+    }
+
+}
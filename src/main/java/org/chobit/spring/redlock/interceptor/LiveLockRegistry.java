@@ -0,0 +1,176 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the keys locked or waited for by this instance.
+ *
+ * <p>Each key maps to an immutable entry replaced atomically, so an update only locks the bin of
+ * its key in the map and the readers never block the invocations. Keys nobody holds or waits for
+ * are removed, so the size is bounded by the concurrent invocations.
+ *
+ * @author rui.zhang
+ */
+final class LiveLockRegistry {
+
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(256);
+
+
+    void waiting(String key, @Nullable String[] keys) {
+        if (null == keys) {
+            waiting(key, 1);
+            return;
+        }
+        for (String k : keys) {
+            waiting(k, 1);
+        }
+    }
+
+
+    /**
+     * Stop waiting for a lock not acquired.
+     */
+    void notAcquired(String key, @Nullable String[] keys) {
+        if (null == keys) {
+            waiting(key, -1);
+            return;
+        }
+        for (String k : keys) {
+            waiting(k, -1);
+        }
+    }
+
+
+    /**
+     * Register the holder of a lock, and stop waiting for it if it was waited for.
+     */
+    Holder acquired(String key, @Nullable String[] keys, boolean waited, String method, LockMode mode,
+                    int permits, long ownerId, long leaseMillis) {
+        long now = System.currentTimeMillis();
+        Holder holder = new Holder(key, keys, new LiveLock.Holder(method, mode, permits, ownerId,
+                Thread.currentThread().getName(), now, leaseMillis > 0 ? now + leaseMillis : -1));
+        if (null == keys) {
+            add(key, holder, waited);
+            return holder;
+        }
+        for (String k : keys) {
+            add(k, holder, waited);
+        }
+        return holder;
+    }
+
+
+    void released(Holder holder) {
+        if (null == holder.keys) {
+            remove(holder.key, holder);
+            return;
+        }
+        for (String k : holder.keys) {
+            remove(k, holder);
+        }
+    }
+
+
+    /**
+     * A holder of a key in this instance, or null if it is not held.
+     */
+    @Nullable
+    LiveLock.Holder holderOf(String key) {
+        Entry entry = entries.get(key);
+        return (null != entry && !entry.holders.isEmpty() ? entry.holders.get(0).view : null);
+    }
+
+
+    List<LiveLock> snapshot() {
+        List<LiveLock> locks = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            List<Holder> holders = e.getValue().holders;
+            List<LiveLock.Holder> views = new ArrayList<>(holders.size());
+            for (Holder holder : holders) {
+                views.add(holder.view);
+            }
+            locks.add(new LiveLock(e.getKey(), e.getValue().waiting, views));
+        }
+        return locks;
+    }
+
+
+    private void waiting(String key, int delta) {
+        entries.compute(key, (k, e) -> Entry.of(null != e ? e.waiting + delta : delta,
+                null != e ? e.holders : Collections.emptyList()));
+    }
+
+
+    private void add(String key, Holder holder, boolean waited) {
+        entries.compute(key, (k, e) -> {
+            List<Holder> holders = new ArrayList<>(null != e ? e.holders.size() + 1 : 1);
+            if (null != e) {
+                holders.addAll(e.holders);
+            }
+            holders.add(holder);
+            return Entry.of((null != e ? e.waiting : 0) - (waited ? 1 : 0), holders);
+        });
+    }
+
+
+    private void remove(String key, Holder holder) {
+        entries.computeIfPresent(key, (k, e) -> {
+            if (1 == e.holders.size()) {
+                return Entry.of(e.waiting, e.holders.get(0) == holder ? Collections.emptyList() : e.holders);
+            }
+            List<Holder> holders = new ArrayList<>(e.holders);
+            holders.remove(holder);
+            return Entry.of(e.waiting, holders);
+        });
+    }
+
+
+    /**
+     * An invocation holding the lock of a key, or of all the keys of a batch.
+     */
+    static final class Holder {
+
+        private final String key;
+
+        @Nullable
+        private final String[] keys;
+
+        private final LiveLock.Holder view;
+
+        private Holder(String key, @Nullable String[] keys, LiveLock.Holder view) {
+            this.key = key;
+            this.keys = keys;
+            this.view = view;
+        }
+    }
+
+
+    private static final class Entry {
+
+        private final int waiting;
+
+        private final List<Holder> holders;
+
+        private Entry(int waiting, List<Holder> holders) {
+            this.waiting = waiting;
+            this.holders = holders;
+        }
+
+        /**
+         * @return the entry, or null to remove the key if nobody holds or waits for it
+         */
+        @Nullable
+        private static Entry of(int waiting, List<Holder> holders) {
+            return (waiting <= 0 && holders.isEmpty() ? null : new Entry(waiting, holders));
+        }
+    }
+
+}
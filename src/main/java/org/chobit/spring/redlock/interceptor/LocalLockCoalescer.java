@@ -0,0 +1,224 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockLease;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two-tier lock that coalesces the contention of one JVM before hitting the lock backend.
+ *
+ * <p>Threads first queue on a local fair lock bound to the resolved key, so only the local
+ * winner contends for the Redis lock. While local waiters are queued the distributed lock is
+ * not released but handed on: the successor renews the lease of the same owner id, which is a
+ * single non-blocking call that checks the ownership and resets the lease, instead of an
+ * unlock, a pub/sub wake up and a new round of acquire attempts for every waiter. The lock is
+ * never re-entered, so it is held once by the owner id and released with a single unlock. If
+ * the lease expired before the hand-off, the renewal fails and the lock is acquired afresh
+ * under a new owner id.
+ *
+ * @author rui.zhang
+ */
+final class LocalLockCoalescer {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalLockCoalescer.class);
+
+    /**
+     * Max count of hand-offs before the distributed lock is really released,
+     * so that the waiters on the other nodes get a chance.
+     */
+    private static final int MAX_HANDOFFS = 32;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>(256);
+
+    private final LockProvider lockProvider;
+
+
+    LocalLockCoalescer(LockProvider lockProvider) {
+        this.lockProvider = lockProvider;
+    }
+
+
+    /**
+     * Acquire the lock of the key, waiting on the local queue first and then on Redis.
+     *
+     * @param key       the resolved key
+     * @param waitTime  the max time to wait for the lock
+     * @param leaseTime the lease time of the lock
+     * @param unit      the time unit
+     * @return the entry of the lock, or null if the lock is not acquired in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Entry tryLock(String key, long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        Entry entry = retain(key);
+        boolean acquired = false;
+        try {
+            if (!entry.local.tryLock(waitTime, unit)) {
+                return null;
+            }
+            try {
+                acquired = tryLockRemote(entry, deadline, unit.toMillis(leaseTime));
+            } finally {
+                if (!acquired) {
+                    entry.local.unlock();
+                }
+            }
+            return acquired ? entry : null;
+        } finally {
+            if (!acquired) {
+                release(entry);
+            }
+        }
+    }
+
+
+    private boolean tryLockRemote(Entry entry, long deadline, long leaseMillis) throws InterruptedException {
+        if (0 != entry.ownerId && entry.local.getHoldCount() > 1) {
+            return true;
+        }
+
+        if (0 != entry.ownerId) {
+            // renewed only if still held by the owner id, nothing to release otherwise
+            CompletableFuture<Boolean> renewed = lockProvider.renewAsync(
+                    Collections.singletonList(new LockLease(entry.key, LockMode.REENTRANT, entry.ownerId)), leaseMillis)
+                    .thenApply(r -> r[0]).toCompletableFuture();
+            if (RedLockFutures.awaitLock(renewed, () -> {
+            })) {
+                return true;
+            }
+            logger.debug("lease of the handed on lock expired, key: {}", entry.key);
+            entry.reset();
+        }
+
+        LockHandle lock = lockProvider.getLock(entry.key, LockMode.REENTRANT);
+        long ownerId = RedLockOwnerIds.next();
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline - System.nanoTime()));
+        CompletionStage<Boolean> future = lock.tryLockAsync(waitMillis, leaseMillis, TimeUnit.MILLISECONDS, ownerId);
+        if (RedLockFutures.awaitLock(lock, future, ownerId)) {
+            entry.ownerId = ownerId;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Release the lock acquired by {@link #tryLock}, handing the distributed lock on
+     * to the next local waiter if there is one.
+     *
+     * @param entry          the entry of the lock
+     * @param finallyRelease whether the distributed lock should be released
+     */
+    void unlock(Entry entry, boolean finallyRelease) {
+        try {
+            if (entry.local.getHoldCount() > 1) {
+                return;
+            }
+            if (!finallyRelease) {
+                entry.reset();
+            } else if (entry.local.hasQueuedThreads() && entry.handoffs < MAX_HANDOFFS) {
+                entry.handoffs++;
+            } else {
+                unlockRemote(entry);
+            }
+        } finally {
+            entry.local.unlock();
+            release(entry);
+        }
+    }
+
+
+    private Entry retain(String key) {
+        return entries.compute(key, (k, e) -> {
+            Entry entry = (null == e ? new Entry(k) : e);
+            entry.refs++;
+            return entry;
+        });
+    }
+
+
+    private void unlockRemote(Entry entry) {
+        String key = entry.key;
+        lockProvider.getLock(key, LockMode.REENTRANT).unlockAsync(entry.ownerId).whenComplete((v, ex) -> {
+            if (null != ex) {
+                logger.error("failed to unlock with key: {}", key, ex);
+            }
+        });
+        entry.reset();
+    }
+
+
+    /**
+     * Drop a reference to the entry. The last one releases the distributed lock if it is still held,
+     * i.e. handed on to local waiters which all gave up before taking the local lock. A new entry of
+     * the key may be created meanwhile, it acquires under another owner id which this unlock never touches.
+     */
+    private void release(Entry entry) {
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(entry.key, (k, e) -> {
+            if (--e.refs > 0) {
+                return e;
+            }
+            removed[0] = true;
+            return null;
+        });
+        if (!removed[0]) {
+            return;
+        }
+        // nobody else may reach the entry anymore, the local lock only publishes its fields
+        entry.local.lock();
+        try {
+            if (0 != entry.ownerId) {
+                logger.debug("release the lock handed on to no one, key: {}", entry.key);
+                unlockRemote(entry);
+            }
+        } finally {
+            entry.local.unlock();
+        }
+    }
+
+
+    /**
+     * Local state of a key. All fields but {@link #refs} are guarded by {@link #local}.
+     */
+    static final class Entry {
+
+        private final String key;
+
+        private final ReentrantLock local = new ReentrantLock(true);
+
+        /**
+         * Guarded by the monitor of the map bin.
+         */
+        private int refs;
+
+        private long ownerId;
+
+        private int handoffs;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+        long ownerId() {
+            return ownerId;
+        }
+
+        private void reset() {
+            this.ownerId = 0;
+            this.handoffs = 0;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ObjectUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lock of a batch of keys, acquired and released as a whole.
+ *
+ * <p>Keys are sorted and deduplicated. The acquire commands of all keys are sent at once instead of
+ * one round trip after another. If some keys are held elsewhere, all the acquired keys are released
+ * and the caller waits on the first contended key only, then tries the others again without waiting.
+ * Since a caller never waits while holding another key, batches sharing keys can't deadlock.
+ *
+ * @author rui.zhang
+ */
+final class MultiKeyLock {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiKeyLock.class);
+
+    private final String[] keys;
+
+    private final LockHandle[] locks;
+
+
+    MultiKeyLock(LockProvider lockProvider, String[] keys, LockMode mode, int permits) {
+        this.keys = keys;
+        this.locks = new LockHandle[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            this.locks[i] = lockProvider.getLock(keys[i], mode, permits);
+        }
+    }
+
+
+    /**
+     * Resolve the keys of a batch from the result of the key expression.
+     *
+     * @param key the result of the key expression
+     * @return the sorted distinct keys, or null if the result is not a collection or an array
+     */
+    @Nullable
+    static String[] resolveKeys(Object key) {
+        Collection<?> elements;
+        if (key instanceof Collection) {
+            elements = (Collection<?>) key;
+        } else if (key.getClass().isArray()) {
+            elements = Arrays.asList(ObjectUtils.toObjectArray(key));
+        } else {
+            return null;
+        }
+        SortedSet<String> keys = new TreeSet<>();
+        for (Object element : elements) {
+            if (null == element) {
+                throw new IllegalArgumentException("Null element in the keys of redLock operation: " + key);
+            }
+            keys.add(element.toString());
+        }
+        return keys.toArray(new String[0]);
+    }
+
+
+    /**
+     * Acquire all the keys.
+     *
+     * @param waitTime  the max time to wait for the keys
+     * @param leaseTime the lease time of the keys
+     * @param unit      the time unit
+     * @param ownerId   the owner of the keys
+     * @return the future of whether all the keys are acquired
+     */
+    CompletableFuture<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        long leaseMillis = (leaseTime > 0 ? unit.toMillis(leaseTime) : -1);
+        return attempt(new boolean[locks.length], deadline, leaseMillis, ownerId);
+    }
+
+
+    private CompletableFuture<Boolean> attempt(boolean[] held, long deadline, long leaseMillis, long ownerId) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[locks.length];
+        for (int i = 0; i < locks.length; i++) {
+            futures[i] = (held[i] ? CompletableFuture.completedFuture(true) :
+                    locks[i].tryLockAsync(0, leaseMillis, TimeUnit.MILLISECONDS, ownerId).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(futures).handle((v, ex) -> null).thenCompose(ignored -> {
+            int contended = -1;
+            Throwable error = null;
+            for (int i = 0; i < futures.length; i++) {
+                if (futures[i].isCompletedExceptionally()) {
+                    error = futures[i].handle((r, ex) -> ex).join();
+                } else if (Boolean.TRUE.equals(futures[i].join())) {
+                    held[i] = true;
+                } else if (contended < 0) {
+                    contended = i;
+                }
+            }
+            if (null == error && contended < 0) {
+                return CompletableFuture.completedFuture(true);
+            }
+
+            CompletableFuture<Void> released = release(held, ownerId);
+            if (null != error) {
+                Throwable cause = error;
+                return released.thenCompose(x -> {
+                    CompletableFuture<Boolean> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(cause);
+                    return failed;
+                });
+            }
+            long waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (waitMillis <= 0) {
+                return released.thenApply(x -> false);
+            }
+            int first = contended;
+            return released
+                    .thenCompose(x -> locks[first].tryLockAsync(waitMillis, leaseMillis, TimeUnit.MILLISECONDS, ownerId))
+                    .thenCompose(locked -> {
+                        if (!locked) {
+                            return CompletableFuture.completedFuture(false);
+                        }
+                        held[first] = true;
+                        return attempt(held, deadline, leaseMillis, ownerId);
+                    });
+        });
+    }
+
+
+    /**
+     * Release all the keys at once.
+     *
+     * @param ownerId the owner of the keys
+     * @return the future completed when all the keys are released
+     */
+    CompletableFuture<Void> unlockAsync(long ownerId) {
+        boolean[] held = new boolean[locks.length];
+        Arrays.fill(held, true);
+        return release(held, ownerId);
+    }
+
+
+    private CompletableFuture<Void> release(boolean[] held, long ownerId) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[locks.length];
+        for (int i = 0; i < locks.length; i++) {
+            if (!held[i]) {
+                futures[i] = CompletableFuture.completedFuture(null);
+                continue;
+            }
+            held[i] = false;
+            String key = keys[i];
+            futures[i] = locks[i].unlockAsync(ownerId).toCompletableFuture().exceptionally(ex -> {
+                logger.error("failed to unlock with key: {}", key, ex);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+
+    @Override
+    public String toString() {
+        return Arrays.toString(keys);
+    }
+
+}
@@ -1,25 +1,54 @@
 package org.chobit.spring.redlock.interceptor;
 
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.deadline.DeadlineProvider;
+import org.chobit.spring.redlock.WaitStrategy;
 import org.chobit.spring.redlock.exception.RedLockException;
+import org.chobit.spring.redlock.interceptor.spel.RedLockKeyGenerator;
 import org.chobit.spring.redlock.interceptor.spel.RedLockOperationExpressionEvaluator;
-import org.redisson.api.RLock;
+import org.chobit.spring.redlock.metrics.RedLockMeters;
+import org.chobit.spring.redlock.metrics.RedLockMetrics;
+import org.chobit.spring.redlock.observation.RedLockObservations;
+import org.chobit.spring.redlock.observation.RedLockObserver;
+import org.chobit.spring.redlock.provider.BackoffLockProvider;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.InMemoryResultStore;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.chobit.spring.redlock.provider.MultiMasterLockProvider;
+import org.chobit.spring.redlock.provider.RedissonLockProvider;
+import org.chobit.spring.redlock.provider.RedissonResultStore;
+import org.chobit.spring.redlock.provider.ResultStore;
+import org.chobit.spring.redlock.routing.DefaultRedLockKeyRouter;
+import org.chobit.spring.redlock.routing.RedLockKeyRouter;
 import org.redisson.api.RedissonClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
 import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.cglib.proxy.Proxy;
-import org.springframework.context.expression.AnnotatedElementKey;
-import org.springframework.expression.EvaluationContext;
 import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import static jodd.util.StringUtil.isBlank;
@@ -34,12 +63,14 @@ import static jodd.util.StringUtil.isBlank;
  *
  * @author rui.zhang
  */
-abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBean {
+abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBean, SmartInitializingSingleton, DisposableBean {
 
 
     private static final Logger logger = LoggerFactory.getLogger(RedLockAspectSupport.class);
 
-    private final Map<RedLockOperationKey, RedLockOperationMetadata> metadataCache = new ConcurrentHashMap<>(1024);
+    private static final String RESULT_KEY_SUFFIX = ":shared-result";
+
+    private final Map<Method, MethodMetadata> metadataCache = new ConcurrentHashMap<>(1024);
 
     private final RedLockOperationExpressionEvaluator evaluator = new RedLockOperationExpressionEvaluator();
 
@@ -48,7 +79,96 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
     @Nullable
     private BeanFactory beanFactory;
 
-    private RedissonClient redissonClient;
+    private LockProvider lockProvider;
+
+    private boolean localCoalescing;
+
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+    @Nullable
+    private RedLockMetrics redLockMetrics;
+
+    @Nullable
+    private RedLockObservations redLockObservations;
+
+    @Nullable
+    private LocalLockCoalescer localLockCoalescer;
+
+    private boolean negativeCache;
+
+    private int negativeCacheMaxSize = 10_000;
+
+    private long negativeCacheMaxTtlMillis = 1_000;
+
+    @Nullable
+    private HeldKeyCache heldKeyCache;
+
+    private long renewalLeaseMillis = 30_000;
+
+    private boolean eagerInit = true;
+
+    private long slowThresholdMillis = 100;
+
+    private double logSampleRate;
+
+    private long logIntervalMillis = 1_000;
+
+    private int recentSlowSize = 128;
+
+    private RedLockLogPolicy logPolicy;
+
+    private boolean liveLocks = true;
+
+    @Nullable
+    private LiveLockRegistry liveLockRegistry;
+
+    private long spinThresholdMillis;
+
+    private long spinInitialBackoffMillis = 1;
+
+    private long spinMaxBackoffMillis = 16;
+
+    private BackoffLockProvider backoffLockProvider;
+
+    @Nullable
+    private ResultStore resultStore;
+
+    private RedLockKeyRouter keyRouter = new DefaultRedLockKeyRouter("", Collections.emptyMap());
+
+    @Nullable
+    private DeadlineProvider deadlineProvider;
+
+    private boolean circuitBreakerEnabled;
+
+    private int circuitBreakerWindowSize = 100;
+
+    private int circuitBreakerMinimumCalls = 20;
+
+    private double circuitBreakerFailureRate = 0.5;
+
+    private long circuitBreakerSlowCallMillis = 1_000;
+
+    private double circuitBreakerLatencyPercentile = 0.9;
+
+    private long circuitBreakerOpenMillis = 10_000;
+
+    private int circuitBreakerProbes = 5;
+
+    @Nullable
+    private RedLockCircuitBreaker circuitBreaker;
+
+    /**
+     * Provider of the local locks the operations fall back to while the circuit breaker is open
+     */
+    @Nullable
+    private InMemoryLockProvider localLockProvider;
+
+    private LeaseRenewer leaseRenewer;
+
+    @Nullable
+    private Executor asyncExecutor;
+
+    private AsyncRedLockExecutor asyncRedLockExecutor;
 
     public RedLockAspectSupport() {
     }
@@ -67,7 +187,306 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
     }
 
     public void setRedissonClient(RedissonClient redissonClient) {
-        this.redissonClient = redissonClient;
+        this.lockProvider = new RedissonLockProvider(redissonClient);
+    }
+
+    /**
+     * Set the backend of the locks, the Redisson locks of {@link #setRedissonClient} by default.
+     *
+     * @param lockProvider the lock provider
+     */
+    public void setLockProvider(LockProvider lockProvider) {
+        this.lockProvider = lockProvider;
+    }
+
+    /**
+     * Set whether the threads of this JVM contending for the same key
+     * should be coalesced on a local lock before hitting Redis.
+     *
+     * @param localCoalescing whether to enable the local coalescing
+     */
+    public void setLocalCoalescing(boolean localCoalescing) {
+        this.localCoalescing = localCoalescing;
+    }
+
+    /**
+     * Set how the callers wait for a lock which is held elsewhere.
+     *
+     * @param waitStrategy the wait strategy
+     */
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Set the metrics of the redLock operations, no metrics are recorded if not set.
+     *
+     * @param redLockMetrics the metrics of the redLock operations
+     */
+    public void setRedLockMetrics(@Nullable RedLockMetrics redLockMetrics) {
+        this.redLockMetrics = redLockMetrics;
+    }
+
+    /**
+     * Set the observations of the acquire and the hold of the locks, nothing is observed if not set.
+     *
+     * @param redLockObservations the observations of the redLock operations
+     */
+    public void setRedLockObservations(@Nullable RedLockObservations redLockObservations) {
+        this.redLockObservations = redLockObservations;
+    }
+
+    /**
+     * Set whether the keys which failed to be acquired without waiting are cached locally,
+     * so that the attempts without waiting fail in-process until the lock expires.
+     *
+     * @param negativeCache whether to enable the negative cache
+     */
+    public void setNegativeCache(boolean negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    /**
+     * Set the max number of keys in the negative cache.
+     *
+     * @param negativeCacheMaxSize the max number of keys
+     */
+    public void setNegativeCacheMaxSize(int negativeCacheMaxSize) {
+        this.negativeCacheMaxSize = negativeCacheMaxSize;
+    }
+
+    /**
+     * Set the max time a key is cached as held, whatever the ttl of the lock.
+     *
+     * @param negativeCacheMaxTtlMillis the max time in milliseconds
+     */
+    public void setNegativeCacheMaxTtlMillis(long negativeCacheMaxTtlMillis) {
+        this.negativeCacheMaxTtlMillis = negativeCacheMaxTtlMillis;
+    }
+
+    /**
+     * Set the lease time of the locks whose {@code leaseTime} is negative,
+     * the leases are renewed every third of it until the locks are released.
+     *
+     * @param renewalLeaseMillis the lease time in milliseconds
+     */
+    public void setRenewalLeaseMillis(long renewalLeaseMillis) {
+        this.renewalLeaseMillis = renewalLeaseMillis;
+    }
+
+    /**
+     * Set whether the redLock operations of all the advised singletons are resolved and validated once
+     * the singletons are instantiated, instead of on their first invocation.
+     *
+     * @param eagerInit whether to resolve the operations at startup
+     */
+    public void setEagerInit(boolean eagerInit) {
+        this.eagerInit = eagerInit;
+    }
+
+    /**
+     * Set the wait time from which an acquisition is slow, logged and kept among the recent slow acquisitions.
+     *
+     * @param slowThresholdMillis the wait time in milliseconds
+     */
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    /**
+     * Set the rate of the acquisitions which are not slow to be logged, 0 to log none of them.
+     *
+     * @param logSampleRate the rate from 0 to 1
+     */
+    public void setLogSampleRate(double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
+    /**
+     * Set the min interval between two logs of the slow acquisitions, or of the failures, of a key template.
+     *
+     * @param logIntervalMillis the interval in milliseconds
+     */
+    public void setLogIntervalMillis(long logIntervalMillis) {
+        this.logIntervalMillis = logIntervalMillis;
+    }
+
+    /**
+     * Set the number of the recent slow acquisitions kept.
+     *
+     * @param recentSlowSize the number of acquisitions
+     */
+    public void setRecentSlowSize(int recentSlowSize) {
+        this.recentSlowSize = recentSlowSize;
+    }
+
+    /**
+     * Set whether the keys locked or waited for by this instance are registered, to be read
+     * by {@link #getLiveLocks()}.
+     *
+     * @param liveLocks whether to register the live locks
+     */
+    public void setLiveLocks(boolean liveLocks) {
+        this.liveLocks = liveLocks;
+    }
+
+    /**
+     * Return the keys locked or waited for by this instance at the moment.
+     *
+     * @return the live locks, empty if they are not registered
+     */
+    public List<LiveLock> getLiveLocks() {
+        return (null != this.liveLockRegistry ? this.liveLockRegistry.snapshot() : Collections.emptyList());
+    }
+
+    /**
+     * Release the lock of a key whoever holds it, in the mode it is held in by this instance if so,
+     * or all the permits if it is held as a semaphore.
+     * The holders find the lock released when they release it.
+     *
+     * @param key the key of the lock
+     * @return whether the lock was held
+     */
+    public boolean forceRelease(String key) {
+        LiveLock.Holder holder = (null != this.liveLockRegistry ? this.liveLockRegistry.holderOf(key) : null);
+        LockHandle lock = (null != holder ? this.lockProvider.getLock(key, holder.getMode(), holder.getPermits()) :
+                this.lockProvider.getLock(key, LockMode.REENTRANT));
+        boolean released = lock.forceUnlockAsync().toCompletableFuture().join();
+        logger.warn("force released lock with key: {}, held: {}", key, released);
+        return released;
+    }
+
+    /**
+     * Return the recent acquisitions slower than the threshold, the latest first.
+     *
+     * @return the recent slow acquisitions
+     */
+    public List<SlowAcquisition> getRecentSlowAcquisitions() {
+        return (null != this.logPolicy ? this.logPolicy.recentSlow() : Collections.emptyList());
+    }
+
+    /**
+     * Set the max wait time of the locks which are waited for by spinning even if not annotated so,
+     * 0 to spin only for the annotated ones.
+     *
+     * @param spinThresholdMillis the max wait time in milliseconds
+     */
+    public void setSpinThresholdMillis(long spinThresholdMillis) {
+        this.spinThresholdMillis = spinThresholdMillis;
+    }
+
+    /**
+     * Set the backoff between the attempts of the spinning waits, doubled after each failed attempt up to the max.
+     *
+     * @param spinInitialBackoffMillis the initial backoff in milliseconds
+     * @param spinMaxBackoffMillis     the max backoff in milliseconds
+     */
+    public void setSpinBackoffMillis(long spinInitialBackoffMillis, long spinMaxBackoffMillis) {
+        this.spinInitialBackoffMillis = spinInitialBackoffMillis;
+        this.spinMaxBackoffMillis = spinMaxBackoffMillis;
+    }
+
+    /**
+     * Set the store of the results shared with the callers which waited for the lock, kept in
+     * the same backend as the locks by default.
+     *
+     * @param resultStore the result store
+     */
+    public void setResultStore(@Nullable ResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    /**
+     * Set the router of the generated keys to the keys of the locks, null to lock the generated keys as is,
+     * but the keys of the operations opting in the hashtag.
+     *
+     * @param keyRouter the key router
+     */
+    public void setKeyRouter(@Nullable RedLockKeyRouter keyRouter) {
+        this.keyRouter = (null != keyRouter ? keyRouter : new DefaultRedLockKeyRouter("", Collections.emptyMap()));
+    }
+
+    /**
+     * Set the provider of the deadlines of the callers, the wait for a lock is capped at the time
+     * left to the caller, and fails at once if none is left. Null to wait as annotated.
+     *
+     * @param deadlineProvider the deadline provider
+     */
+    public void setDeadlineProvider(@Nullable DeadlineProvider deadlineProvider) {
+        this.deadlineProvider = deadlineProvider;
+    }
+
+    /**
+     * Set the executor the asynchronous methods are invoked on once the lock is acquired, and their results
+     * completed on once the lock is released, rather than the threads of the Redis client. Null for the
+     * common pool. The calling thread goes on if the lock operation completed on it already.
+     *
+     * @param asyncExecutor the executor of the asynchronous methods
+     */
+    public void setAsyncExecutor(@Nullable Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Set whether the acquisitions are guarded by a circuit breaker, which opens when Redis fails or is slow,
+     * so that the operations fall back as annotated instead of blocking for the timeout of the client.
+     *
+     * @param circuitBreakerEnabled whether to enable the circuit breaker
+     */
+    public void setCircuitBreaker(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+    }
+
+    /**
+     * Set the number of the last acquisitions the circuit breaker computes the rates on.
+     *
+     * @param windowSize   the number of acquisitions
+     * @param minimumCalls the min number of acquisitions before the circuit breaker may open
+     */
+    public void setCircuitBreakerWindow(int windowSize, int minimumCalls) {
+        this.circuitBreakerWindowSize = windowSize;
+        this.circuitBreakerMinimumCalls = minimumCalls;
+    }
+
+    /**
+     * Set the rate of the failed acquisitions opening the circuit breaker.
+     *
+     * @param failureRate the rate from 0 to 1
+     */
+    public void setCircuitBreakerFailureRate(double failureRate) {
+        this.circuitBreakerFailureRate = failureRate;
+    }
+
+    /**
+     * Set the latency of the acquisitions without waiting opening the circuit breaker once its percentile exceeds it.
+     *
+     * @param slowCallMillis    the latency in milliseconds
+     * @param latencyPercentile the percentile from 0 to 1
+     */
+    public void setCircuitBreakerSlowCall(long slowCallMillis, double latencyPercentile) {
+        this.circuitBreakerSlowCallMillis = slowCallMillis;
+        this.circuitBreakerLatencyPercentile = latencyPercentile;
+    }
+
+    /**
+     * Set how long the circuit breaker stays open, then the number of the probes which must succeed to close it.
+     *
+     * @param openMillis the open duration in milliseconds
+     * @param probes     the number of probes
+     */
+    public void setCircuitBreakerOpen(long openMillis, int probes) {
+        this.circuitBreakerOpenMillis = openMillis;
+        this.circuitBreakerProbes = probes;
+    }
+
+    /**
+     * Return the state of the circuit breaker.
+     *
+     * @return CLOSED, OPEN or HALF_OPEN, null if there is no circuit breaker
+     */
+    @Nullable
+    public String getCircuitBreakerState() {
+        return (null != this.circuitBreaker ? this.circuitBreaker.getState() : null);
     }
 
     @Override
@@ -79,15 +498,165 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
             throw new IllegalStateException(
                     "'redLockAttributeSource' is required: If there are no 'redLockAttributeSource', then don't use a redLock aspect.");
         }
+        if (null == this.lockProvider) {
+            throw new IllegalStateException("'lockProvider' or 'redissonClient' is required for a redLock aspect.");
+        }
+        if (this.localCoalescing) {
+            this.localLockCoalescer = new LocalLockCoalescer(this.lockProvider);
+        }
+        if (this.negativeCache) {
+            this.heldKeyCache = new HeldKeyCache(this.lockProvider, this.negativeCacheMaxSize, this.negativeCacheMaxTtlMillis);
+        }
+        if (null == this.resultStore) {
+            this.resultStore = createResultStore(this.lockProvider);
+        }
+        if (this.liveLocks) {
+            this.liveLockRegistry = new LiveLockRegistry();
+        }
+        if (this.circuitBreakerEnabled) {
+            this.circuitBreaker = new RedLockCircuitBreaker(this.circuitBreakerWindowSize, this.circuitBreakerMinimumCalls,
+                    this.circuitBreakerFailureRate, this.circuitBreakerSlowCallMillis, this.circuitBreakerLatencyPercentile,
+                    this.circuitBreakerOpenMillis, this.circuitBreakerProbes);
+            this.localLockProvider = new InMemoryLockProvider();
+        }
+        this.logPolicy = new RedLockLogPolicy(this.slowThresholdMillis, this.logSampleRate,
+                this.logIntervalMillis, this.recentSlowSize);
+        this.backoffLockProvider = new BackoffLockProvider(this.lockProvider,
+                this.spinInitialBackoffMillis, this.spinMaxBackoffMillis, TimeUnit.MILLISECONDS);
+        this.leaseRenewer = new LeaseRenewer(this.lockProvider, this.renewalLeaseMillis, this.redLockMetrics);
+        this.asyncRedLockExecutor = new AsyncRedLockExecutor(this.lockProvider, this.backoffLockProvider,
+                this.leaseRenewer, this.logPolicy, this.liveLockRegistry, this.deadlineProvider,
+                this.circuitBreaker, this.localLockProvider,
+                null != this.asyncExecutor ? this.asyncExecutor : ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public void destroy() {
+        if (null != this.leaseRenewer) {
+            this.leaseRenewer.shutdown();
+        }
+        if (null != this.backoffLockProvider) {
+            this.backoffLockProvider.shutdown();
+        }
+        if (null != this.localLockProvider) {
+            this.localLockProvider.shutdown();
+        }
+    }
+
+
+    /**
+     * Resolve the operations of the singletons advised by this aspect, so that the key expressions
+     * are parsed and the metadata cached before the first invocation, and the invalid ones fail
+     * the startup instead of the first request.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!this.eagerInit || !(this.beanFactory instanceof ListableBeanFactory)) {
+            return;
+        }
+        int count = 0;
+        Map<String, Advised> proxies = ((ListableBeanFactory) this.beanFactory).getBeansOfType(Advised.class, false, false);
+        for (Map.Entry<String, Advised> proxy : proxies.entrySet()) {
+            if (isAdvisedBy(proxy.getValue())) {
+                count += prepare(proxy.getKey(), proxy.getValue());
+            }
+        }
+        logger.info("resolved {} redLock operations at startup", count);
+    }
+
+
+    private boolean isAdvisedBy(Advised proxy) {
+        for (Advisor advisor : proxy.getAdvisors()) {
+            if (advisor.getAdvice() == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Resolve the operations of the methods a proxy may be invoked through, the methods of the
+     * target class for the class based proxies and the ones of the interfaces for the others.
+     */
+    private int prepare(String beanName, Advised proxy) {
+        Class<?> targetClass = AopProxyUtils.ultimateTargetClass(proxy);
+        int count = 0;
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(targetClass, ReflectionUtils.USER_DECLARED_METHODS)) {
+            count += prepare(beanName, method, targetClass);
+        }
+        for (Class<?> ifc : proxy.getProxiedInterfaces()) {
+            for (Method method : ifc.getMethods()) {
+                count += prepare(beanName, method, targetClass);
+            }
+        }
+        return count;
+    }
+
+
+    private int prepare(String beanName, Method method, Class<?> targetClass) {
+        RedLockOperation operation = getRedLockOperationSource().getRedLockOperation(method, targetClass);
+        if (null == operation) {
+            return 0;
+        }
+        try {
+            createRedLockOperationMetadata(operation, method, targetClass);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Invalid redLock operation on method '" + method.getName()
+                    + "' of bean '" + beanName + "': " + e.getMessage(), e);
+        }
+        return 1;
+    }
+
+
+    private static void validate(RedLockOperation operation) {
+        if (isBlank(operation.getKey())) {
+            throw new IllegalArgumentException("The key is blank");
+        }
+        if (operation.getWaitTime() < 0) {
+            throw new IllegalArgumentException("The wait time must not be negative: " + operation.getWaitTime());
+        }
+        if (0 == operation.getLeaseTime()) {
+            throw new IllegalArgumentException("The lease time must be positive, or negative to be renewed automatically");
+        }
+        if (operation.getShareResultTime() < 0) {
+            throw new IllegalArgumentException("The share result time must not be negative: " + operation.getShareResultTime());
+        }
+        if (operation.getPermits() < 1) {
+            throw new IllegalArgumentException("The permits must be positive: " + operation.getPermits());
+        }
+        if (operation.getPermits() > 1) {
+            if (operation.getLeaseTime() < 0) {
+                throw new IllegalArgumentException("The lease time must be positive with permits, which expire instead of being renewed");
+            }
+            if (LockMode.REENTRANT != operation.getMode() || operation.getShareResultTime() > 0) {
+                throw new IllegalArgumentException("The permits can't be combined with the lock mode or the shared results");
+            }
+        }
+        if (operation.isStriped() && (LockMode.REENTRANT != operation.getMode() || operation.getShareResultTime() > 0
+                || operation.isHashtag())) {
+            throw new IllegalArgumentException("The stripes can't be combined with the lock mode, the shared results or the hashtag");
+        }
+    }
+
+
+    private static ResultStore createResultStore(LockProvider lockProvider) {
+        if (lockProvider instanceof RedissonLockProvider) {
+            return new RedissonResultStore(((RedissonLockProvider) lockProvider).getRedissonClient());
+        }
+        if (lockProvider instanceof MultiMasterLockProvider) {
+            // the results are a best effort, a lost one is only computed again
+            return new RedissonResultStore(((MultiMasterLockProvider) lockProvider).getMasters().get(0));
+        }
+        return new InMemoryResultStore();
     }
 
 
     protected Object execute(final RedLockOperationInvoker invoker, Object target, Method method, Object[] args) throws Throwable {
         Class<?> targetClass = getTargetClass(target);
-        RedLockOperationSource operationSource = getRedLockOperationSource();
-        if (null != operationSource) {
-            RedLockOperation operation = operationSource.getRedLockOperation(method, targetClass);
-            RedLockOperationContext context = createOperationContext(operation, method, args, target, targetClass);
+        RedLockOperationMetadata metadata = getRedLockOperationMetadata(method, targetClass);
+        if (null != metadata) {
+            RedLockOperationContext context = createOperationContext(metadata, args, target);
             return this.execute(invoker, context);
         }
         return invoker.invoke();
@@ -99,67 +668,349 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
     }
 
     private Object execute(final RedLockOperationInvoker invoker, RedLockOperationContext context) throws Throwable {
-        String key = generateKey(context);
+        return execute(invoker, context.metadata, generateKey(context));
+    }
+
+
+    /**
+     * Lock the keys and invoke the operation, shared by the annotated methods and the {@link RedLockTemplate}.
+     *
+     * @param invoker  the invoker of the operation, wrapping its exceptions
+     * @param metadata the metadata of the operation
+     * @param keyValue the key, or the collection or the array of the keys of a batch
+     * @return the result of the operation, a future or a publisher completed once the lock is released if async
+     * @throws Throwable the failure to lock, or the exception of the operation wrapped
+     */
+    Object execute(final RedLockOperationInvoker invoker, RedLockOperationMetadata metadata, Object keyValue) throws Throwable {
+        String[] keys = MultiKeyLock.resolveKeys(keyValue);
+        if (null != keys && 1 == keys.length) {
+            keyValue = keys[0];
+            keys = null;
+        }
+        String key = (null != keys ? Arrays.toString(keys) : keyValue.toString());
 
-        logger.info("begin redisson lock with key: {}" , key);
+        logger.debug("begin redisson lock with key: {}", key);
 
-        if (isBlank(key)) {
+        if (null != keys ? !hasText(keys) : isBlank(key)) {
             logger.error("obtain red lock key error");
             throw new RedLockException("failed to get lock key");
         }
 
-        long waitTime = context.metadata.operation.getWaitTime();
-        long leaseTime = context.metadata.operation.getLeaseTime();
-        TimeUnit timeUnit = context.metadata.operation.getTimeUnit();
+        if (null != keys) {
+            keys = this.keyRouter.route(keys, metadata.operation.isHashtag());
+            key = Arrays.toString(keys);
+        } else {
+            key = this.keyRouter.route(key, metadata.operation.isHashtag(), metadata.operation.isStriped());
+        }
+
+        if (metadata.async) {
+            return this.asyncRedLockExecutor.execute(invoker, metadata.returnType,
+                    key, keys, metadata.name, metadata.operation, metadata.meters, metadata.observer, metadata.spin);
+        }
+
+        long waitTime = metadata.operation.getWaitTime();
+        long leaseTime = metadata.operation.getLeaseTime();
+        TimeUnit timeUnit = metadata.operation.getTimeUnit();
 
-        boolean finallyRelease = context.metadata.operation.isFinallyRelease();
+        boolean autoRenew = (leaseTime < 0);
+        if (autoRenew) {
+            waitTime = timeUnit.toMillis(waitTime);
+            leaseTime = this.leaseRenewer.getLeaseMillis();
+            timeUnit = TimeUnit.MILLISECONDS;
+        }
+
+        boolean finallyRelease = metadata.operation.isFinallyRelease();
+        LockMode mode = metadata.mode;
+        int permits = metadata.operation.getPermits();
+        RedLockMeters meters = metadata.meters;
+        RedLockObserver.Span span = metadata.observer.start();
+
+        boolean failFast = (null != this.heldKeyCache && null == keys && metadata.negativeCacheable);
+        if (failFast && this.heldKeyCache.isHeld(key)) {
+            meters.timeout(0);
+            span.timeout();
+            span.end(0);
+            this.logPolicy.timeout(metadata.operation.getKey(), key, 0);
+            throw new RedLockException("failed to lock with key:", key);
+        }
+
+        long remainingNanos = (null != this.deadlineProvider ? this.deadlineProvider.remainingNanos() : DeadlineProvider.NO_DEADLINE);
+        if (remainingNanos <= 0) {
+            meters.timeout(0);
+            span.timeout();
+            span.end(0);
+            this.logPolicy.timeout(metadata.operation.getKey(), key, 0);
+            throw new RedLockException("deadline exceeded, failed to lock with key:", key);
+        }
+        if (remainingNanos < timeUnit.toNanos(waitTime)) {
+            // the caller would be gone before the end of the wait
+            waitTime = TimeUnit.NANOSECONDS.toMillis(remainingNanos);
+            leaseTime = Math.max(1, timeUnit.toMillis(leaseTime));
+            timeUnit = TimeUnit.MILLISECONDS;
+        }
+
+        // while the circuit breaker is open, Redis is not hit and the operation falls back as annotated
+        boolean degraded = (null != this.circuitBreaker && !this.circuitBreaker.tryAcquirePermission());
+        if (degraded) {
+            FallbackPolicy fallback = metadata.operation.getFallback();
+            this.logPolicy.degraded(metadata.operation.getKey(), key, fallback);
+            if (FallbackPolicy.FAIL_FAST == fallback) {
+                RedLockException e = new RedLockException("circuit breaker open, failed to lock with key:", key);
+                meters.failed(0);
+                span.failed(e);
+                span.end(0);
+                throw e;
+            }
+            if (FallbackPolicy.PROCEED_UNLOCKED == fallback) {
+                meters.degraded();
+                span.skipped();
+                try {
+                    return invoker.invoke();
+                } catch (RedLockOperationInvoker.WrappedThrowableException e) {
+                    span.error(e.getOriginal());
+                    throw e;
+                } finally {
+                    span.end(0);
+                }
+            }
+            // the local locks are not renewed, they are held until released
+            leaseTime = (autoRenew ? -1 : leaseTime);
+            failFast = false;
+        }
+        RedLockCircuitBreaker breaker = (degraded ? null : this.circuitBreaker);
+
+        // with the results shared, the lock is attempted without waiting first to know whether it was contended
+        boolean shareResult = (metadata.shareResultMillis > 0 && !degraded);
+        boolean contended = false;
         boolean lockResult = false;
-        RLock lock = null;
+        LockHandle lock = null;
+        MultiKeyLock multiLock = null;
+        LocalLockCoalescer.Entry entry = null;
+        LeaseRenewer.Renewal renewal = null;
+        LiveLockRegistry registry = this.liveLockRegistry;
+        LiveLockRegistry.Holder holder = null;
+        boolean waits = (waitTime > 0);
+        int roundTrips = 0;
+        long beginTime = System.nanoTime();
+        long lockTime = beginTime;
         try {
-            lock = redissonClient.getLock(key);
-            lockResult = lock.tryLock(waitTime, leaseTime, timeUnit);
+            if (null != registry && waits) {
+                registry.waiting(key, keys);
+            }
+            try {
+                LockProvider provider = (degraded ? localLockProvider : metadata.spin ? backoffLockProvider : lockProvider);
+                for (long wait = (shareResult ? 0 : waitTime); ; wait = waitTime, contended = true) {
+                    roundTrips++;
+                    if (null != keys) {
+                        multiLock = (null != multiLock ? multiLock : new MultiKeyLock(provider, keys, mode, permits));
+                        lockResult = tryLock(multiLock, wait, leaseTime, timeUnit);
+                    } else if (null != this.localLockCoalescer && metadata.coalescable && !degraded) {
+                        entry = this.localLockCoalescer.tryLock(key, wait, leaseTime, timeUnit);
+                        lockResult = (null != entry);
+                    } else {
+                        lock = (null != lock ? lock : provider.getLock(key, mode, permits));
+                        lockResult = tryLock(lock, wait, leaseTime, timeUnit);
+                    }
+                    if (lockResult || wait == waitTime) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                if (null != registry && waits) {
+                    registry.notAcquired(key, keys);
+                }
+                if (null != breaker && !(e instanceof InterruptedException)) {
+                    breaker.onFailure();
+                }
+                meters.failed(System.nanoTime() - beginTime);
+                span.failed(e);
+                this.logPolicy.failed(metadata.operation.getKey(), key, e);
+                throw e;
+            }
+            lockTime = System.nanoTime();
+            if (null != breaker) {
+                breaker.onSuccess(lockTime - beginTime, waits);
+            }
             if (!lockResult) {
-                logger.error("failed to lock with key: {}", key);
-                throw new RedLockException("failed to lock with key:" + key);
+                if (null != registry && waits) {
+                    registry.notAcquired(key, keys);
+                }
+                if (failFast) {
+                    this.heldKeyCache.held(key, mode);
+                }
+                meters.timeout(lockTime - beginTime);
+                span.timeout();
+                this.logPolicy.timeout(metadata.operation.getKey(), key, lockTime - beginTime);
+                throw new RedLockException("failed to lock with key:", key);
+            }
+            meters.acquired(lockTime - beginTime);
+            span.acquired();
+            this.logPolicy.acquired(metadata.operation.getKey(), key, lockTime - beginTime);
+            if (failFast) {
+                this.heldKeyCache.acquired(key);
+            }
+            long ownerId = (null != entry ? entry.ownerId() : Thread.currentThread().getId());
+            if (null != registry) {
+                holder = registry.acquired(key, keys, waits, metadata.name, mode, permits,
+                        ownerId, autoRenew ? -1 : timeUnit.toMillis(leaseTime));
+            }
+            if (autoRenew && !degraded) {
+                renewal = this.leaseRenewer.register(ownerId, mode, null != keys ? keys : new String[]{key});
             }
 
             logger.debug("lock succeed with key: {}", key);
 
-            return invoker.invoke();
+            String resultKey = (shareResult ? key + RESULT_KEY_SUFFIX : null);
+            if (contended) {
+                roundTrips++;
+                Object shared = getSharedResult(resultKey);
+                if (null != shared && ClassUtils.isAssignableValue(metadata.returnType, shared)) {
+                    logger.debug("share the result of the previous holder with key: {}", key);
+                    return shared;
+                }
+            }
+
+            Object result = invoker.invoke();
+            if (shareResult && null != result) {
+                roundTrips++;
+                putSharedResult(resultKey, result, metadata.shareResultMillis);
+            }
+            return result;
 
         } catch (Exception e) {
-            logger.error("an error occurred during red lock", e);
+            // the failures to acquire are logged already
+            if (lockResult) {
+                Throwable error = (e instanceof RedLockOperationInvoker.WrappedThrowableException ?
+                        ((RedLockOperationInvoker.WrappedThrowableException) e).getOriginal() : e);
+                span.error(error);
+                this.logPolicy.failed(metadata.operation.getKey(), key, error);
+            }
             throw e;
         } finally {
-            if (finallyRelease && lockResult) {
-                lock.unlock();
-                logger.debug("unlock with the key: {}", key);
+            try {
+                if (lockResult) {
+                    long holdTime = System.nanoTime() - lockTime;
+                    meters.released(holdTime, !autoRenew && leaseTime > 0 && holdTime > timeUnit.toNanos(leaseTime));
+                    if (null != holder) {
+                        registry.released(holder);
+                    }
+                    if (null != renewal) {
+                        this.leaseRenewer.cancel(renewal);
+                    }
+                    if (null != entry) {
+                        this.localLockCoalescer.unlock(entry, finallyRelease);
+                    } else if (finallyRelease && null != multiLock) {
+                        roundTrips++;
+                        multiLock.unlockAsync(Thread.currentThread().getId()).join();
+                    } else if (finallyRelease) {
+                        roundTrips++;
+                        lock.unlock();
+                    }
+                    if (failFast && finallyRelease) {
+                        this.heldKeyCache.released(key);
+                    }
+                    logger.debug("unlock with the key: {}", key);
+                }
+            } finally {
+                span.end(roundTrips);
+            }
+            logger.debug("release redisson lock with key: {}", key);
+        }
+    }
+
+
+    @Nullable
+    private Object getSharedResult(String resultKey) {
+        try {
+            return this.resultStore.getAsync(resultKey).toCompletableFuture().join();
+        } catch (Exception e) {
+            logger.warn("failed to get the shared result with key: {}", resultKey, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Store the result before the lock is released, so that it is visible to the next holder.
+     */
+    private void putSharedResult(String resultKey, Object result, long ttlMillis) {
+        try {
+            this.resultStore.putAsync(resultKey, result, ttlMillis).toCompletableFuture().join();
+        } catch (Exception e) {
+            logger.warn("failed to share the result with key: {}", resultKey, e);
+        }
+    }
+
+
+    private static boolean hasText(String[] keys) {
+        for (String key : keys) {
+            if (isBlank(key)) {
+                return false;
             }
-            logger.info("release redisson lock with key: {}" , key);
         }
+        return keys.length > 0;
+    }
+
+
+    /**
+     * Acquire all the keys of a batch, the acquire commands are sent at once.
+     */
+    private boolean tryLock(MultiKeyLock multiLock, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        long threadId = Thread.currentThread().getId();
+        return RedLockFutures.awaitLock(multiLock.tryLockAsync(waitTime, leaseTime, timeUnit, threadId),
+                () -> multiLock.unlockAsync(threadId));
+    }
+
+
+    private boolean tryLock(LockHandle lock, long waitTime, long leaseTime, TimeUnit timeUnit) throws InterruptedException {
+        if (WaitStrategy.ASYNC == this.waitStrategy && waitTime > 0) {
+            long threadId = Thread.currentThread().getId();
+            return RedLockFutures.awaitLock(lock, lock.tryLockAsync(waitTime, leaseTime, timeUnit, threadId), threadId);
+        }
+        return lock.tryLock(waitTime, leaseTime, timeUnit);
     }
 
 
-    private String generateKey(RedLockOperationContext context) {
+    private Object generateKey(RedLockOperationContext context) {
         Object key = context.generateKey();
         if (null == key) {
             throw new IllegalArgumentException("Null key returned for redLock operation (maybe you are " +
                     "using named params on classes without debug info?) " + context.metadata.operation);
         }
-        return key.toString();
+        return key;
     }
 
 
-    protected RedLockOperationContext createOperationContext(RedLockOperation operation,
-                                                             Method method,
+    protected RedLockOperationContext createOperationContext(RedLockOperationMetadata metadata,
                                                              Object[] args,
-                                                             Object target,
-                                                             Class<?> targetClass) {
-        RedLockOperationMetadata metadata = createRedLockOperationMetadata(operation, method, targetClass);
+                                                             Object target) {
         return new RedLockOperationContext(metadata, args, target);
     }
 
 
+    /**
+     * Return the cached {@link RedLockOperationMetadata} of the method, resolving the operation
+     * on the first invocation only. The lookup doesn't allocate anything.
+     *
+     * @param method      the method on which the operation is invoked
+     * @param targetClass the target type
+     * @return the metadata, or null if the method has no redLock operation
+     */
+    @Nullable
+    protected RedLockOperationMetadata getRedLockOperationMetadata(Method method, Class<?> targetClass) {
+        RedLockOperationMetadata metadata = find(this.metadataCache.get(method), targetClass);
+        if (null != metadata) {
+            return metadata;
+        }
+        RedLockOperationSource operationSource = getRedLockOperationSource();
+        RedLockOperation operation = (null != operationSource ? operationSource.getRedLockOperation(method, targetClass) : null);
+        if (null == operation) {
+            return null;
+        }
+        return createRedLockOperationMetadata(operation, method, targetClass);
+    }
+
+
     /**
      * Return the {@link RedLockAspectSupport.RedLockOperationMetadata} for the specified operation.
      * <p>Resolve the {@link org.springframework.cache.interceptor.KeyGenerator} to be
@@ -173,56 +1024,61 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
     protected RedLockOperationMetadata createRedLockOperationMetadata(RedLockOperation operation,
                                                                       Method method,
                                                                       Class<?> targetClass) {
-        RedLockOperationKey operationKey = new RedLockOperationKey(operation, method, targetClass);
-        RedLockOperationMetadata metadata = this.metadataCache.get(operationKey);
-        if (null == metadata) {
-            metadata = new RedLockOperationMetadata(operation, method, targetClass);
-            this.metadataCache.put(operationKey, metadata);
+        RedLockOperationMetadata metadata = find(this.metadataCache.get(method), targetClass);
+        if (null != metadata) {
+            return metadata;
         }
-        return metadata;
+        validate(operation);
+        RedLockOperationMetadata created = new RedLockOperationMetadata(operation, method, targetClass,
+                this.evaluator, this.beanFactory, this.redLockMetrics, this.redLockObservations, this.spinThresholdMillis);
+        MethodMetadata head = this.metadataCache.compute(method, (m, current) ->
+                (null != find(current, targetClass) ? current : new MethodMetadata(targetClass, created, current)));
+        return find(head, targetClass);
     }
 
 
-    private static final class RedLockOperationKey implements Comparable<RedLockOperationKey> {
-
-        private final RedLockOperation operation;
-
-        private final AnnotatedElementKey methodKey;
+    /**
+     * Validate a programmatic operation of the {@link RedLockTemplate} and return its metadata,
+     * to be cached by the caller.
+     *
+     * @param operation the operation
+     * @param method    the method of the template the operation is executed with
+     * @return the metadata for the operation
+     */
+    RedLockOperationMetadata createRedLockOperationMetadata(RedLockOperation operation, Method method) {
+        validate(operation);
+        return new RedLockOperationMetadata(operation, method, this.redLockMetrics, this.redLockObservations, this.spinThresholdMillis);
+    }
 
-        private RedLockOperationKey(RedLockOperation operation, Method method, Class<?> targetClass) {
-            this.operation = operation;
-            this.methodKey = new AnnotatedElementKey(method, targetClass);
-        }
 
-        @Override
-        public boolean equals(Object other) {
-            if (this == other) {
-                return true;
-            }
-            if (!(other instanceof RedLockOperationKey)) {
-                return false;
+    @Nullable
+    private static RedLockOperationMetadata find(@Nullable MethodMetadata head, Class<?> targetClass) {
+        for (MethodMetadata node = head; null != node; node = node.next) {
+            if (node.targetClass == targetClass) {
+                return node.metadata;
             }
-            RedLockOperationKey otherKey = (RedLockOperationKey) other;
-            return (this.operation.equals(otherKey.operation) && this.methodKey.equals(otherKey.methodKey));
         }
+        return null;
+    }
 
-        @Override
-        public int hashCode() {
-            return (this.operation.hashCode() * 31 + this.methodKey.hashCode());
-        }
 
-        @Override
-        public String toString() {
-            return this.operation + " on " + this.methodKey;
-        }
+    /**
+     * The metadata of a method for each of its target classes, most methods have only one.
+     * Immutable, a new head is linked when a target class is added.
+     */
+    private static final class MethodMetadata {
 
-        @Override
-        public int compareTo(RedLockOperationKey other) {
-            int result = this.operation.getKey().compareTo(other.operation.getKey());
-            if (result == 0) {
-                result = this.methodKey.compareTo(other.methodKey);
-            }
-            return result;
+        private final Class<?> targetClass;
+
+        private final RedLockOperationMetadata metadata;
+
+        @Nullable
+        private final MethodMetadata next;
+
+        private MethodMetadata(Class<?> targetClass, RedLockOperationMetadata metadata, @Nullable MethodMetadata next) {
+            this.targetClass = targetClass;
+            this.metadata = metadata;
+            this.next = next;
         }
     }
 
@@ -241,16 +1097,106 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
 
         private final Method targetMethod;
 
-        private final AnnotatedElementKey methodKey;
+        private final Class<?> returnType;
+
+        @Nullable
+        private final RedLockKeyGenerator keyGenerator;
+
+        /**
+         * The annotated method as shown in the live locks
+         */
+        private final String name;
+
+        private final RedLockMeters meters;
+
+        private final RedLockObserver observer;
+
+        /**
+         * Whether the method returns a future or a publisher, which is locked until it completes
+         */
+        private final boolean async;
+
+        private final LockMode mode;
+
+        /**
+         * Whether the lock is waited for by spinning, annotated so or with a wait time within the threshold
+         */
+        private final boolean spin;
+
+        /**
+         * Whether the threads of this JVM may be coalesced on a local lock, only for the reentrant locks not spinning nor permits
+         */
+        private final boolean coalescable;
+
+        /**
+         * Whether the attempts may fail fast from the negative cache, only for the exclusive locks without waiting, not the permits
+         */
+        private final boolean negativeCacheable;
+
+        /**
+         * How long the result is shared with the callers which waited for the lock, 0 if not shared
+         */
+        private final long shareResultMillis;
 
         public RedLockOperationMetadata(RedLockOperation operation,
                                         Method method,
-                                        Class<?> targetClass) {
+                                        Class<?> targetClass,
+                                        RedLockOperationExpressionEvaluator evaluator,
+                                        @Nullable BeanFactory beanFactory,
+                                        @Nullable RedLockMetrics metrics,
+                                        @Nullable RedLockObservations observations,
+                                        long spinThresholdMillis) {
+            this(operation, method, targetClass, (!Proxy.isProxyClass(targetClass) ? AopUtils.getMostSpecificMethod(method, targetClass) : method),
+                    targetClass.getSimpleName() + "." + method.getName(), evaluator, beanFactory, metrics, observations, spinThresholdMillis);
+        }
+
+        /**
+         * Metadata of a programmatic operation of the {@link RedLockTemplate}, the keys are given instead of generated,
+         * the name of the operation stands for the key template.
+         */
+        RedLockOperationMetadata(RedLockOperation operation,
+                                 Method method,
+                                 @Nullable RedLockMetrics metrics,
+                                 @Nullable RedLockObservations observations,
+                                 long spinThresholdMillis) {
+            this(operation, method, method.getDeclaringClass(), method, operation.getKey(),
+                    null, null, metrics, observations, spinThresholdMillis);
+        }
+
+        private RedLockOperationMetadata(RedLockOperation operation,
+                                         Method method,
+                                         Class<?> targetClass,
+                                         Method targetMethod,
+                                         String name,
+                                         @Nullable RedLockOperationExpressionEvaluator evaluator,
+                                         @Nullable BeanFactory beanFactory,
+                                         @Nullable RedLockMetrics metrics,
+                                         @Nullable RedLockObservations observations,
+                                         long spinThresholdMillis) {
             this.operation = operation;
             this.method = method;
             this.targetClass = targetClass;
-            this.targetMethod = (!Proxy.isProxyClass(targetClass) ? AopUtils.getMostSpecificMethod(method, targetClass) : this.method);
-            this.methodKey = new AnnotatedElementKey(this.targetMethod, targetClass);
+            this.targetMethod = targetMethod;
+            this.returnType = method.getReturnType();
+            this.name = name;
+            boolean bound = !isBlank(operation.getKey());
+            this.keyGenerator = (null == evaluator || !bound ? null :
+                    evaluator.compileKey(operation.getKey(), method, targetClass, this.targetMethod, beanFactory));
+            this.meters = (null != metrics && bound ?
+                    metrics.meters(this.targetMethod, targetClass, operation.getKey()) : RedLockMeters.NOOP);
+            this.observer = (null != observations && bound ?
+                    observations.observer(this.targetMethod, targetClass, operation.getKey(),
+                            operation.getTimeUnit().toMillis(operation.getWaitTime())) : RedLockObserver.NOOP);
+            this.async = AsyncRedLockExecutor.isAsync(this.returnType);
+            this.mode = operation.getMode();
+            long waitNanos = operation.getTimeUnit().toNanos(operation.getWaitTime());
+            this.spin = (operation.isSpin() || (waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(spinThresholdMillis)));
+            boolean exclusive = (1 == operation.getPermits() && !operation.isStriped());
+            this.coalescable = (LockMode.REENTRANT == this.mode && !this.spin && exclusive);
+            this.negativeCacheable = (0 == operation.getWaitTime() && HeldKeyCache.isCacheable(this.mode) && exclusive);
+            this.shareResultMillis = (operation.getShareResultTime() > 0 && waitNanos > 0 && !this.async && exclusive
+                    && void.class != this.returnType ?
+                    Math.max(1, operation.getTimeUnit().toMillis(operation.getShareResultTime())) : 0);
         }
     }
 
@@ -288,16 +1234,10 @@ abstract class RedLockAspectSupport implements BeanFactoryAware, InitializingBea
          */
         @Nullable
         protected Object generateKey() {
-            if (isBlank(this.metadata.operation.getKey())) {
+            if (null == this.metadata.keyGenerator) {
                 throw new RedLockException("The key for redLock is blank.");
             }
-            EvaluationContext evaluationContext = createEvaluationContext();
-            return evaluator.key(this.metadata.operation.getKey(), this.metadata.methodKey, evaluationContext);
-        }
-
-        private EvaluationContext createEvaluationContext() {
-            return evaluator.createEvaluationContext(this.metadata.method, this.args,
-                    this.target, this.metadata.targetClass, this.metadata.targetMethod, beanFactory);
+            return this.metadata.keyGenerator.generate(this.target, this.args);
         }
     }
 
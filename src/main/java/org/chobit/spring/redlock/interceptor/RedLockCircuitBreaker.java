@@ -0,0 +1,269 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker around the acquisition of the locks, so that a slow or unavailable Redis doesn't
+ * block every caller for the response timeout of the client.
+ *
+ * <p>The outcomes of the last acquisitions are kept in a lock-free ring buffer. The breaker opens
+ * once the failed ones reach the failure rate, or once the latency percentile of the ones without
+ * waiting exceeds the slow call threshold: the latency of the waiting ones is mostly the time the
+ * lock is held elsewhere. A lock held elsewhere is not a failure either. While open, the callers
+ * don't hit Redis and fall back as annotated. After the open duration, a few probes are let through,
+ * the breaker closes if all of them succeed in time and opens again otherwise.
+ *
+ * @author rui.zhang
+ */
+final class RedLockCircuitBreaker {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(RedLockCircuitBreaker.class);
+
+    private static final int CLOSED = 0;
+
+    private static final int OPEN = 1;
+
+    private static final int HALF_OPEN = 2;
+
+    private static final int SUCCESS = 1;
+
+    private static final int SLOW = 2;
+
+    private static final int FAILURE = 3;
+
+    private final int windowSize;
+
+    private final int minimumCalls;
+
+    private final double failureRate;
+
+    private final long slowCallNanos;
+
+    /**
+     * The rate of the slow calls from which the latency percentile exceeds the threshold
+     */
+    private final double slowCallRate;
+
+    private final long openNanos;
+
+    private final int probes;
+
+    private volatile int state = CLOSED;
+
+    private volatile Window window;
+
+    /**
+     * When the open breaker lets the probes through, or when the probes without an outcome are given up on
+     */
+    private volatile long nextProbeTime;
+
+    private int probesIssued;
+
+    private int probesSucceeded;
+
+
+    /**
+     * @param windowSize          the number of the last acquisitions the rates are computed on
+     * @param minimumCalls        the min number of acquisitions in the window before the breaker may open
+     * @param failureRate         the rate of the failed acquisitions opening the breaker, from 0 to 1
+     * @param slowCallMillis      the latency from which an acquisition without waiting is slow
+     * @param latencyPercentile   the percentile of the latency compared to the threshold, from 0 to 1
+     * @param openMillis          how long the breaker stays open before the probes
+     * @param probes              the number of probes which must succeed to close the breaker
+     */
+    RedLockCircuitBreaker(int windowSize, int minimumCalls, double failureRate,
+                          long slowCallMillis, double latencyPercentile, long openMillis, int probes) {
+        if (windowSize < 1 || probes < 1) {
+            throw new IllegalArgumentException("The window size and the probes must be positive: " + windowSize + ", " + probes);
+        }
+        if (failureRate <= 0 || failureRate > 1 || latencyPercentile <= 0 || latencyPercentile > 1) {
+            throw new IllegalArgumentException("The failure rate and the latency percentile must be in (0, 1]: "
+                    + failureRate + ", " + latencyPercentile);
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRate = failureRate;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowCallRate = 1 - latencyPercentile;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.probes = probes;
+        this.window = new Window(windowSize);
+    }
+
+
+    /**
+     * Whether an acquisition may hit Redis, its outcome must be recorded then.
+     *
+     * @return false if the caller should fall back
+     */
+    boolean tryAcquirePermission() {
+        int current = this.state;
+        if (CLOSED == current) {
+            return true;
+        }
+        if (OPEN == current && System.nanoTime() - nextProbeTime < 0) {
+            return false;
+        }
+        return tryProbe();
+    }
+
+
+    /**
+     * @param waitNanos how long the acquisition took, whether it acquired the lock or not
+     * @param waited    whether it waited for the lock, its latency is not compared to the threshold then
+     */
+    void onSuccess(long waitNanos, boolean waited) {
+        record(!waited && waitNanos >= slowCallNanos ? SLOW : SUCCESS);
+    }
+
+
+    void onFailure() {
+        record(FAILURE);
+    }
+
+
+    /**
+     * @return CLOSED, OPEN or HALF_OPEN
+     */
+    String getState() {
+        switch (this.state) {
+            case OPEN:
+                return "OPEN";
+            case HALF_OPEN:
+                return "HALF_OPEN";
+            default:
+                return "CLOSED";
+        }
+    }
+
+
+    private void record(int outcome) {
+        if (CLOSED != this.state) {
+            recordProbe(outcome);
+            return;
+        }
+        Window w = this.window;
+        w.add(outcome);
+        int calls = w.calls();
+        if (calls < minimumCalls) {
+            return;
+        }
+        int failures = w.failures.get();
+        int slow = w.slow.get();
+        if (failures >= failureRate * calls) {
+            open(CLOSED, failures + " of the last " + calls + " acquisitions failed");
+        } else if (slow > slowCallRate * calls) {
+            open(CLOSED, slow + " of the last " + calls + " acquisitions without waiting slower than "
+                    + TimeUnit.NANOSECONDS.toMillis(slowCallNanos) + "ms");
+        }
+    }
+
+
+    /**
+     * The transitions are rare, they are serialized so that the probes are counted once per round.
+     */
+    private synchronized boolean tryProbe() {
+        long now = System.nanoTime();
+        if (CLOSED == this.state) {
+            return true;
+        }
+        if (OPEN == this.state) {
+            if (now - nextProbeTime < 0) {
+                return false;
+            }
+            this.state = HALF_OPEN;
+            startProbes(now);
+            logger.info("red lock circuit breaker half open, {} probes let through", probes);
+        } else if (probesIssued >= probes && now - nextProbeTime >= 0) {
+            // the probes lost without an outcome, such as the interrupted ones
+            startProbes(now);
+        }
+        if (probesIssued < probes) {
+            probesIssued++;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * The outcomes recorded while open, of the calls permitted before the breaker opened, are ignored.
+     */
+    private synchronized void recordProbe(int outcome) {
+        if (HALF_OPEN != this.state) {
+            return;
+        }
+        if (SUCCESS != outcome) {
+            open(HALF_OPEN, "a probe " + (FAILURE == outcome ? "failed" : "was slow"));
+        } else if (++probesSucceeded >= probes) {
+            this.window = new Window(windowSize);
+            this.state = CLOSED;
+            logger.info("red lock circuit breaker closed, {} probes succeeded", probes);
+        }
+    }
+
+
+    private synchronized void open(int from, String reason) {
+        if (from != this.state) {
+            return;
+        }
+        this.nextProbeTime = System.nanoTime() + openNanos;
+        this.state = OPEN;
+        logger.warn("red lock circuit breaker opened for {}ms: {}", TimeUnit.NANOSECONDS.toMillis(openNanos), reason);
+    }
+
+
+    private void startProbes(long now) {
+        this.probesIssued = 0;
+        this.probesSucceeded = 0;
+        this.nextProbeTime = now + openNanos;
+    }
+
+
+    /**
+     * The outcomes of the last acquisitions, the counts follow the slots overwritten.
+     */
+    private static final class Window {
+
+        private final AtomicIntegerArray outcomes;
+
+        private final AtomicLong sequence = new AtomicLong();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicInteger slow = new AtomicInteger();
+
+        private Window(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        private void add(int outcome) {
+            int index = (int) (sequence.getAndIncrement() % outcomes.length());
+            int previous = outcomes.getAndSet(index, outcome);
+            if (previous != outcome) {
+                count(previous, -1);
+                count(outcome, 1);
+            }
+        }
+
+        private void count(int outcome, int delta) {
+            if (FAILURE == outcome) {
+                failures.addAndGet(delta);
+            } else if (SLOW == outcome) {
+                slow.addAndGet(delta);
+            }
+        }
+
+        private int calls() {
+            return (int) Math.min(sequence.get(), outcomes.length());
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.exception.RedLockException;
+import org.chobit.spring.redlock.provider.LockHandle;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers to wait for the asynchronous lock operations of the lock providers.
+ *
+ * @author rui.zhang
+ */
+final class RedLockFutures {
+
+
+    private RedLockFutures() {
+    }
+
+
+    /**
+     * Wait for the result of an asynchronous acquire.
+     *
+     * <p>Waits with {@link java.util.concurrent.locks.LockSupport#park} only, so virtual threads
+     * are unmounted instead of pinning their carrier. If interrupted while waiting, the lock
+     * acquired afterwards is released at once.
+     *
+     * @param lock    the lock
+     * @param future  the future of the acquire
+     * @param ownerId the owner id used to acquire the lock
+     * @return whether the lock is acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static boolean awaitLock(LockHandle lock, CompletionStage<Boolean> future, long ownerId) throws InterruptedException {
+        return awaitLock(future.toCompletableFuture(), () -> lock.unlockAsync(ownerId));
+    }
+
+
+    /**
+     * Wait for the result of an asynchronous acquire.
+     *
+     * @param future  the future of the acquire
+     * @param release releases the lock if it is acquired after the caller is interrupted
+     * @return whether the lock is acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static boolean awaitLock(CompletableFuture<Boolean> future, Runnable release) throws InterruptedException {
+        try {
+            return Boolean.TRUE.equals(future.get());
+        } catch (InterruptedException e) {
+            future.thenAccept(locked -> {
+                if (Boolean.TRUE.equals(locked)) {
+                    release.run();
+                }
+            });
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RedLockException("failed to acquire redis lock", cause);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * What is logged of the redLock operations, so that the hot path doesn't log on every invocation.
+ *
+ * <p>The acquisitions slower than the threshold are logged and kept in a lock-free ring buffer of
+ * the recent ones, the others are sampled at a rate. The slow acquisitions and the failures are
+ * logged at most once per interval and key template, the suppressed ones are counted in the next log.
+ *
+ * @author rui.zhang
+ */
+final class RedLockLogPolicy {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(RedLockLogPolicy.class);
+
+    private final long slowThresholdNanos;
+
+    private final double sampleRate;
+
+    private final long logIntervalNanos;
+
+    private final AtomicReferenceArray<SlowAcquisition> recentSlow;
+
+    private final int mask;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>(64);
+
+
+    /**
+     * @param slowThresholdMillis the wait time from which an acquisition is slow
+     * @param sampleRate          the rate of the other acquisitions logged, from 0 to 1
+     * @param logIntervalMillis   the min interval between two logs of a key template
+     * @param recentSlowSize      the number of recent slow acquisitions kept, rounded up to a power of two
+     */
+    RedLockLogPolicy(long slowThresholdMillis, double sampleRate, long logIntervalMillis, int recentSlowSize) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.sampleRate = sampleRate;
+        this.logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(logIntervalMillis);
+        int capacity = (recentSlowSize <= 1 ? 1 : Integer.highestOneBit(recentSlowSize - 1) << 1);
+        this.recentSlow = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+
+    void acquired(String keyTemplate, String key, long waitNanos) {
+        if (waitNanos >= slowThresholdNanos) {
+            record(keyTemplate, key, waitNanos, true);
+            long suppressed = limiter(keyTemplate).trySlow(logIntervalNanos);
+            if (suppressed >= 0) {
+                logger.warn("slow lock with key: {}, waited {}ms, {} more suppressed",
+                        key, TimeUnit.NANOSECONDS.toMillis(waitNanos), suppressed);
+            }
+        } else if (sampleRate > 0 && logger.isInfoEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            logger.info("lock with key: {}, waited {}us", key, TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        }
+    }
+
+
+    void timeout(String keyTemplate, String key, long waitNanos) {
+        if (waitNanos >= slowThresholdNanos) {
+            record(keyTemplate, key, waitNanos, false);
+        }
+        long suppressed = limiter(keyTemplate).tryFailure(logIntervalNanos);
+        if (suppressed >= 0) {
+            logger.error("failed to lock with key: {}, waited {}ms, {} more suppressed",
+                    key, TimeUnit.NANOSECONDS.toMillis(waitNanos), suppressed);
+        }
+    }
+
+
+    void failed(String keyTemplate, String key, Throwable error) {
+        long suppressed = limiter(keyTemplate).tryFailure(logIntervalNanos);
+        if (suppressed >= 0) {
+            logger.error("an error occurred during red lock with key: {}, {} more suppressed", key, suppressed, error);
+        }
+    }
+
+
+    void degraded(String keyTemplate, String key, FallbackPolicy fallback) {
+        long suppressed = limiter(keyTemplate).tryFailure(logIntervalNanos);
+        if (suppressed >= 0) {
+            logger.warn("circuit breaker open, fall back to {} with key: {}, {} more suppressed", fallback, key, suppressed);
+        }
+    }
+
+
+    /**
+     * The recent slow acquisitions, the latest first.
+     */
+    List<SlowAcquisition> recentSlow() {
+        List<SlowAcquisition> result = new ArrayList<>(recentSlow.length());
+        for (int i = 0; i < recentSlow.length(); i++) {
+            SlowAcquisition slow = recentSlow.get(i);
+            if (null != slow) {
+                result.add(slow);
+            }
+        }
+        result.sort(Comparator.comparingLong(SlowAcquisition::getTimestamp).reversed());
+        return result;
+    }
+
+
+    private void record(String keyTemplate, String key, long waitNanos, boolean acquired) {
+        int index = (int) (sequence.getAndIncrement() & mask);
+        recentSlow.lazySet(index, new SlowAcquisition(keyTemplate, key,
+                TimeUnit.NANOSECONDS.toMillis(waitNanos), acquired, System.currentTimeMillis()));
+    }
+
+
+    private Limiter limiter(String keyTemplate) {
+        Limiter limiter = limiters.get(keyTemplate);
+        return (null != limiter ? limiter : limiters.computeIfAbsent(keyTemplate, t -> new Limiter()));
+    }
+
+
+    /**
+     * The next time a key template may log, for the slow acquisitions and the failures apart.
+     */
+    private static final class Limiter {
+
+        private final AtomicLong nextSlow = new AtomicLong(System.nanoTime());
+
+        private final AtomicLong suppressedSlow = new AtomicLong();
+
+        private final AtomicLong nextFailure = new AtomicLong(System.nanoTime());
+
+        private final AtomicLong suppressedFailures = new AtomicLong();
+
+        long trySlow(long intervalNanos) {
+            return tryLog(nextSlow, suppressedSlow, intervalNanos);
+        }
+
+        long tryFailure(long intervalNanos) {
+            return tryLog(nextFailure, suppressedFailures, intervalNanos);
+        }
+
+        /**
+         * @return the number of logs suppressed since the last one, or -1 if this one is suppressed too
+         */
+        private static long tryLog(AtomicLong next, AtomicLong suppressed, long intervalNanos) {
+            long now = System.nanoTime();
+            long at = next.get();
+            if (now - at >= 0 && next.compareAndSet(at, now + intervalNanos)) {
+                return suppressed.getAndSet(0);
+            }
+            suppressed.incrementAndGet();
+            return -1;
+        }
+    }
+
+}
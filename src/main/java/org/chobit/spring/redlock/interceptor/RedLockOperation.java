@@ -1,5 +1,8 @@
 package org.chobit.spring.redlock.interceptor;
 
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.chobit.spring.redlock.LockMode;
+
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -38,6 +41,41 @@ public class RedLockOperation {
      */
     private boolean finallyRelease;
 
+    /**
+     * 锁的类型
+     */
+    private LockMode mode = LockMode.REENTRANT;
+
+    /**
+     * 是否自旋等待锁
+     */
+    private boolean spin;
+
+    /**
+     * 共享结果的保留时长
+     */
+    private long shareResultTime;
+
+    /**
+     * 许可数
+     */
+    private int permits = 1;
+
+    /**
+     * 熔断器打开时的降级方式
+     */
+    private FallbackPolicy fallback = FallbackPolicy.FAIL_FAST;
+
+    /**
+     * 是否开启hashtag
+     */
+    private boolean hashtag;
+
+    /**
+     * 是否拆分子锁
+     */
+    private boolean striped;
+
 
     public String getKey() {
         return key;
@@ -78,4 +116,60 @@ public class RedLockOperation {
     public void setFinallyRelease(boolean finallyRelease) {
         this.finallyRelease = finallyRelease;
     }
+
+    public LockMode getMode() {
+        return mode;
+    }
+
+    public void setMode(LockMode mode) {
+        this.mode = mode;
+    }
+
+    public boolean isSpin() {
+        return spin;
+    }
+
+    public void setSpin(boolean spin) {
+        this.spin = spin;
+    }
+
+    public long getShareResultTime() {
+        return shareResultTime;
+    }
+
+    public void setShareResultTime(long shareResultTime) {
+        this.shareResultTime = shareResultTime;
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public void setPermits(int permits) {
+        this.permits = permits;
+    }
+
+    public FallbackPolicy getFallback() {
+        return fallback;
+    }
+
+    public void setFallback(FallbackPolicy fallback) {
+        this.fallback = fallback;
+    }
+
+    public boolean isHashtag() {
+        return hashtag;
+    }
+
+    public void setHashtag(boolean hashtag) {
+        this.hashtag = hashtag;
+    }
+
+    public boolean isStriped() {
+        return striped;
+    }
+
+    public void setStriped(boolean striped) {
+        this.striped = striped;
+    }
 }
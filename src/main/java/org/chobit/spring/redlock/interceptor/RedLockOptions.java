@@ -0,0 +1,235 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.RedLock;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RedLockTemplate}操作的选项，即除Key外的{@link RedLock}属性
+ *
+ * <p>选项不可变且按值比较，由模板解析一次，宜定义为常量。名称在度量、日志及持有中的锁里代替Key表达式
+ *
+ * @author rui.zhang
+ */
+public final class RedLockOptions {
+
+
+    private final RedLockOperation operation;
+
+    private final int hash;
+
+
+    private RedLockOptions(Builder builder) {
+        RedLockOperation operation = new RedLockOperation();
+        operation.setKey(builder.name);
+        operation.setWaitTime(builder.waitTime);
+        operation.setLeaseTime(builder.leaseTime);
+        operation.setTimeUnit(builder.timeUnit);
+        operation.setFinallyRelease(builder.finallyRelease);
+        operation.setMode(builder.mode);
+        operation.setSpin(builder.spin);
+        operation.setShareResultTime(builder.shareResultTime);
+        operation.setPermits(builder.permits);
+        operation.setFallback(builder.fallback);
+        operation.setHashtag(builder.hashtag);
+        operation.setStriped(builder.striped);
+        this.operation = operation;
+        this.hash = Objects.hash(builder.name, builder.waitTime, builder.leaseTime, builder.timeUnit, builder.finallyRelease,
+                builder.mode, builder.spin, builder.shareResultTime, builder.permits, builder.fallback,
+                builder.hashtag, builder.striped);
+    }
+
+
+    /**
+     * 以{@link RedLock}的默认值开始构建操作的选项
+     *
+     * @param name 操作的名称，如"stock"
+     * @return 选项的构建器
+     */
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+
+    public String getName() {
+        return operation.getKey();
+    }
+
+
+    /**
+     * 选项对应的操作，不可修改
+     */
+    RedLockOperation getOperation() {
+        return operation;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RedLockOptions)) {
+            return false;
+        }
+        RedLockOperation that = ((RedLockOptions) o).operation;
+        return hash == ((RedLockOptions) o).hash
+                && operation.getKey().equals(that.getKey())
+                && operation.getWaitTime() == that.getWaitTime()
+                && operation.getLeaseTime() == that.getLeaseTime()
+                && operation.getTimeUnit() == that.getTimeUnit()
+                && operation.isFinallyRelease() == that.isFinallyRelease()
+                && operation.getMode() == that.getMode()
+                && operation.isSpin() == that.isSpin()
+                && operation.getShareResultTime() == that.getShareResultTime()
+                && operation.getPermits() == that.getPermits()
+                && operation.getFallback() == that.getFallback()
+                && operation.isHashtag() == that.isHashtag()
+                && operation.isStriped() == that.isStriped();
+    }
+
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+
+    @Override
+    public String toString() {
+        return "RedLockOptions{name=" + operation.getKey() + ", waitTime=" + operation.getWaitTime()
+                + ", leaseTime=" + operation.getLeaseTime() + ", timeUnit=" + operation.getTimeUnit()
+                + ", mode=" + operation.getMode() + ", permits=" + operation.getPermits() + "}";
+    }
+
+
+    /**
+     * {@link RedLockOptions}的构建器
+     */
+    public static final class Builder {
+
+        private final String name;
+
+        private long waitTime = 0;
+
+        private long leaseTime = 1;
+
+        private TimeUnit timeUnit = TimeUnit.SECONDS;
+
+        private boolean finallyRelease = true;
+
+        private LockMode mode = LockMode.REENTRANT;
+
+        private boolean spin = false;
+
+        private long shareResultTime = 0;
+
+        private int permits = 1;
+
+        private FallbackPolicy fallback = FallbackPolicy.FAIL_FAST;
+
+        private boolean hashtag = false;
+
+        private boolean striped = false;
+
+        private Builder(String name) {
+            this.name = Objects.requireNonNull(name, "name");
+        }
+
+        /**
+         * @see RedLock#waitTime()
+         */
+        public Builder waitTime(long waitTime) {
+            this.waitTime = waitTime;
+            return this;
+        }
+
+        /**
+         * @see RedLock#leaseTime()
+         */
+        public Builder leaseTime(long leaseTime) {
+            this.leaseTime = leaseTime;
+            return this;
+        }
+
+        /**
+         * @see RedLock#timeUnit()
+         */
+        public Builder timeUnit(TimeUnit timeUnit) {
+            this.timeUnit = Objects.requireNonNull(timeUnit, "timeUnit");
+            return this;
+        }
+
+        /**
+         * @see RedLock#finallyRelease()
+         */
+        public Builder finallyRelease(boolean finallyRelease) {
+            this.finallyRelease = finallyRelease;
+            return this;
+        }
+
+        /**
+         * @see RedLock#mode()
+         */
+        public Builder mode(LockMode mode) {
+            this.mode = Objects.requireNonNull(mode, "mode");
+            return this;
+        }
+
+        /**
+         * @see RedLock#spin()
+         */
+        public Builder spin(boolean spin) {
+            this.spin = spin;
+            return this;
+        }
+
+        /**
+         * @see RedLock#shareResultTime()
+         */
+        public Builder shareResultTime(long shareResultTime) {
+            this.shareResultTime = shareResultTime;
+            return this;
+        }
+
+        /**
+         * @see RedLock#permits()
+         */
+        public Builder permits(int permits) {
+            this.permits = permits;
+            return this;
+        }
+
+        /**
+         * @see RedLock#fallback()
+         */
+        public Builder fallback(FallbackPolicy fallback) {
+            this.fallback = Objects.requireNonNull(fallback, "fallback");
+            return this;
+        }
+
+        /**
+         * @see RedLock#hashtag()
+         */
+        public Builder hashtag(boolean hashtag) {
+            this.hashtag = hashtag;
+            return this;
+        }
+
+        /**
+         * @see RedLock#striped()
+         */
+        public Builder striped(boolean striped) {
+            this.striped = striped;
+            return this;
+        }
+
+        public RedLockOptions build() {
+            return new RedLockOptions(this);
+        }
+    }
+
+}
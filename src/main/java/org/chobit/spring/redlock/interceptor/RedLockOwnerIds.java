@@ -0,0 +1,27 @@
+package org.chobit.spring.redlock.interceptor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of the owner ids of the locks which are not bound to a thread.
+ *
+ * <p>Redisson identifies the holder of a lock by a thread id. Owner ids are negative
+ * so that they never collide with the thread ids Redisson uses by default.
+ *
+ * @author rui.zhang
+ */
+final class RedLockOwnerIds {
+
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+
+    private RedLockOwnerIds() {
+    }
+
+
+    static long next() {
+        return -SEQUENCE.incrementAndGet();
+    }
+
+}
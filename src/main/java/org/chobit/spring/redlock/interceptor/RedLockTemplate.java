@@ -0,0 +1,183 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.RedLock;
+import org.chobit.spring.redlock.exception.RedLockException;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 编程式的{@link RedLock}，用于代理无法拦截的自调用，以及不宜承担代理、反射及Key表达式开销的热点循环
+ *
+ * <p>与{@link RedLockInterceptor}拦截的注解方法由同一引擎执行：Key路由、截止时间、熔断、度量、观测及持有中的锁均同样生效。
+ * 选项的元数据只解析一次并缓存，执行时仅需查找
+ *
+ * <pre class="code">
+ * private static final RedLockOptions STOCK = RedLockOptions.builder("stock").waitTime(3).leaseTime(10).build();
+ *
+ * long left = redLockTemplate.execute("stock:" + sku, STOCK, () -&gt; deduct(sku));
+ * </pre>
+ *
+ * @author rui.zhang
+ */
+public class RedLockTemplate {
+
+
+    private static final Method EXECUTE = ClassUtils.getMethod(RedLockTemplate.class, "execute",
+            String.class, RedLockOptions.class, Supplier.class);
+
+    private static final Method EXECUTE_ASYNC = ClassUtils.getMethod(RedLockTemplate.class, "executeAsync",
+            String.class, RedLockOptions.class, Supplier.class);
+
+    private final RedLockInterceptor redLockInterceptor;
+
+    private final Map<RedLockOptions, RedLockAspectSupport.RedLockOperationMetadata> metadataCache = new ConcurrentHashMap<>(64);
+
+    private final Map<RedLockOptions, RedLockAspectSupport.RedLockOperationMetadata> asyncMetadataCache = new ConcurrentHashMap<>(64);
+
+
+    public RedLockTemplate(RedLockInterceptor redLockInterceptor) {
+        this.redLockInterceptor = redLockInterceptor;
+    }
+
+
+    /**
+     * 锁定Key并执行操作，操作返回后释放锁
+     *
+     * @param key     锁的Key
+     * @param options 锁的选项
+     * @param action  持有锁时执行的操作
+     * @param <T>     结果的类型
+     * @return 操作的结果，配置了共享结果时也可能是上一持有者共享的结果
+     * @throws RedLockException 未获取到锁时抛出
+     */
+    public <T> T execute(String key, RedLockOptions options, Supplier<T> action) {
+        return doExecute(checkKey(key), options, action);
+    }
+
+
+    /**
+     * 批量锁定所有Key并执行操作，按顺序获取各Key的锁
+     *
+     * @param keys    锁的Key
+     * @param options 锁的选项
+     * @param action  持有所有锁时执行的操作
+     * @param <T>     结果的类型
+     * @return 操作的结果
+     * @throws RedLockException 未获取到锁时抛出
+     */
+    public <T> T execute(Collection<String> keys, RedLockOptions options, Supplier<T> action) {
+        return doExecute(checkKey(keys), options, action);
+    }
+
+
+    /**
+     * 非阻塞地锁定Key后执行操作，锁由返回的future而非线程持有，操作返回的stage完成后释放锁
+     *
+     * @param key     锁的Key
+     * @param options 锁的选项
+     * @param action  持有锁时启动的操作
+     * @param <T>     结果的类型
+     * @return 结果的future，未获取到锁时以{@link RedLockException}失败
+     */
+    public <T> CompletableFuture<T> executeAsync(String key, RedLockOptions options, Supplier<? extends CompletionStage<T>> action) {
+        return doExecuteAsync(checkKey(key), options, action);
+    }
+
+
+    /**
+     * 非阻塞地批量锁定所有Key后执行操作
+     *
+     * @param keys    锁的Key
+     * @param options 锁的选项
+     * @param action  持有所有锁时启动的操作
+     * @param <T>     结果的类型
+     * @return 结果的future，未获取到锁时以{@link RedLockException}失败
+     */
+    public <T> CompletableFuture<T> executeAsync(Collection<String> keys, RedLockOptions options,
+                                                 Supplier<? extends CompletionStage<T>> action) {
+        return doExecuteAsync(checkKey(keys), options, action);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private <T> T doExecute(Object keyValue, RedLockOptions options, Supplier<T> action) {
+        RedLockAspectSupport.RedLockOperationMetadata metadata = metadata(this.metadataCache, options, EXECUTE);
+        try {
+            return (T) this.redLockInterceptor.execute(invoker(action), metadata, keyValue);
+        } catch (RedLockOperationInvoker.WrappedThrowableException e) {
+            throw propagate(e.getOriginal());
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> doExecuteAsync(Object keyValue, RedLockOptions options,
+                                                    Supplier<? extends CompletionStage<T>> action) {
+        RedLockAspectSupport.RedLockOperationMetadata metadata = metadata(this.asyncMetadataCache, options, EXECUTE_ASYNC);
+        try {
+            return (CompletableFuture<T>) this.redLockInterceptor.execute(invoker(action), metadata, keyValue);
+        } catch (Throwable t) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(t);
+            return failed;
+        }
+    }
+
+
+    private RedLockAspectSupport.RedLockOperationMetadata metadata(Map<RedLockOptions, RedLockAspectSupport.RedLockOperationMetadata> cache,
+                                                                   RedLockOptions options, Method method) {
+        RedLockAspectSupport.RedLockOperationMetadata metadata = cache.get(options);
+        if (null != metadata) {
+            return metadata;
+        }
+        return cache.computeIfAbsent(options, o -> this.redLockInterceptor.createRedLockOperationMetadata(o.getOperation(), method));
+    }
+
+
+    /**
+     * 与注解方法的invoker一致，包装操作抛出的异常
+     */
+    private static RedLockOperationInvoker invoker(Supplier<?> action) {
+        return () -> {
+            try {
+                return action.get();
+            } catch (Throwable t) {
+                throw new RedLockOperationInvoker.WrappedThrowableException(t);
+            }
+        };
+    }
+
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            return new RedLockException("interrupted while waiting for the lock", t);
+        }
+        return new UndeclaredThrowableException(t);
+    }
+
+
+    private static <K> K checkKey(K key) {
+        if (null == key) {
+            throw new IllegalArgumentException("The key of redLock operation must not be null");
+        }
+        return key;
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.chobit.spring.redlock.interceptor;
+
+/**
+ * A lock acquired, or timed out, after waiting longer than the slow threshold.
+ *
+ * @author rui.zhang
+ */
+public final class SlowAcquisition {
+
+
+    /**
+     * RedLock Key 表达式
+     */
+    private final String keyTemplate;
+
+    /**
+     * 锁的Key
+     */
+    private final String key;
+
+    /**
+     * 等待锁的时长，单位毫秒
+     */
+    private final long waitMillis;
+
+    /**
+     * 是否获取到锁
+     */
+    private final boolean acquired;
+
+    /**
+     * 等待结束的时间戳，单位毫秒
+     */
+    private final long timestamp;
+
+
+    SlowAcquisition(String keyTemplate, String key, long waitMillis, boolean acquired, long timestamp) {
+        this.keyTemplate = keyTemplate;
+        this.key = key;
+        this.waitMillis = waitMillis;
+        this.acquired = acquired;
+        this.timestamp = timestamp;
+    }
+
+
+    public String getKeyTemplate() {
+        return keyTemplate;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public boolean isAcquired() {
+        return acquired;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,232 @@
+package org.chobit.spring.redlock.interceptor.spel;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.ast.OpPlus;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compile the simple forms of key expressions into {@link RedLockKeyGenerator}s
+ * which read the method arguments directly, without any {@code EvaluationContext}.
+ *
+ * <p>Supported forms are literals, method parameters ({@code #userId}, {@code #p0}, {@code #a0}),
+ * property paths on them ({@code #order.id}) and string concatenations of those
+ * ({@code 'order:' + #order.id}). Other expressions are left to SpEL.
+ *
+ * @author rui.zhang
+ */
+final class RedLockKeyCompiler {
+
+
+    /**
+     * Marks a part which can't be resolved directly, e.g. a null value in the middle of a property path.
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private static final Method[] NO_GETTERS = new Method[0];
+
+
+    private RedLockKeyCompiler() {
+    }
+
+
+    /**
+     * Compile the AST of a key expression.
+     *
+     * @param ast        the AST of the expression
+     * @param method     the method declaring the parameters
+     * @param paramNames the parameter names of the method, may be null
+     * @param fallback   the generator used when a part can't be resolved directly at runtime
+     * @return the compiled generator, or null if the expression is not a supported form
+     */
+    @Nullable
+    static RedLockKeyGenerator compile(SpelNode ast,
+                                       Method method,
+                                       @Nullable String[] paramNames,
+                                       RedLockKeyGenerator fallback) {
+        if (ast instanceof Literal) {
+            Object value = ((Literal) ast).getLiteralValue().getValue();
+            return (target, args) -> value;
+        }
+
+        if (ast instanceof OpPlus) {
+            List<SpelNode> operands = new ArrayList<>();
+            flatten(ast, operands);
+            if (operands.size() < 2 ||
+                    !(operands.get(0) instanceof StringLiteral || operands.get(1) instanceof StringLiteral)) {
+                return null;
+            }
+            Part[] parts = new Part[operands.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = compilePart(operands.get(i), method, paramNames);
+                if (null == parts[i]) {
+                    return null;
+                }
+            }
+            return new ConcatKeyGenerator(parts, fallback);
+        }
+
+        Part part = compilePart(ast, method, paramNames);
+        if (null == part) {
+            return null;
+        }
+        return (target, args) -> {
+            Object value = part.resolve(args);
+            return UNRESOLVED == value ? fallback.generate(target, args) : value;
+        };
+    }
+
+
+    private static void flatten(SpelNode node, List<SpelNode> operands) {
+        if (node instanceof OpPlus && 2 == node.getChildCount()) {
+            flatten(node.getChild(0), operands);
+            operands.add(node.getChild(1));
+        } else {
+            operands.add(node);
+        }
+    }
+
+
+    @Nullable
+    private static Part compilePart(SpelNode node, Method method, @Nullable String[] paramNames) {
+        if (node instanceof Literal) {
+            Object value = ((Literal) node).getLiteralValue().getValue();
+            return args -> value;
+        }
+        if (node instanceof VariableReference) {
+            int index = parameterIndex((VariableReference) node, method, paramNames);
+            return index < 0 ? null : new ArgumentPart(index, NO_GETTERS);
+        }
+        if (node instanceof CompoundExpression && node.getChildCount() > 1
+                && node.getChild(0) instanceof VariableReference) {
+            int index = parameterIndex((VariableReference) node.getChild(0), method, paramNames);
+            if (index < 0) {
+                return null;
+            }
+            Method[] getters = new Method[node.getChildCount() - 1];
+            Class<?> type = method.getParameterTypes()[index];
+            for (int i = 1; i < node.getChildCount(); i++) {
+                if (!(node.getChild(i) instanceof PropertyOrFieldReference)) {
+                    return null;
+                }
+                PropertyOrFieldReference ref = (PropertyOrFieldReference) node.getChild(i);
+                PropertyDescriptor pd = (ref.isNullSafe() ? null : BeanUtils.getPropertyDescriptor(type, ref.getName()));
+                if (null == pd || null == pd.getReadMethod()) {
+                    return null;
+                }
+                getters[i - 1] = pd.getReadMethod();
+                ReflectionUtils.makeAccessible(getters[i - 1]);
+                type = getters[i - 1].getReturnType();
+            }
+            return new ArgumentPart(index, getters);
+        }
+        return null;
+    }
+
+
+    /**
+     * Resolve the index of the parameter referenced by the variable,
+     * in the same order as {@code MethodBasedEvaluationContext} registers them.
+     */
+    private static int parameterIndex(VariableReference ref, Method method, @Nullable String[] paramNames) {
+        String name = ref.toStringAST().substring(1);
+        if ("root".equals(name) || "this".equals(name)) {
+            return -1;
+        }
+        if (null != paramNames) {
+            for (int i = 0; i < paramNames.length; i++) {
+                if (name.equals(paramNames[i])) {
+                    return i;
+                }
+            }
+        }
+        if (name.length() > 1 && (name.charAt(0) == 'p' || name.charAt(0) == 'a')) {
+            try {
+                int index = Integer.parseInt(name.substring(1));
+                if (index >= 0 && index < method.getParameterCount()) {
+                    return index;
+                }
+            } catch (NumberFormatException ignored) {
+                // not an alias of the parameter
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * 从方法参数中解析出的Key片段
+     */
+    @FunctionalInterface
+    private interface Part {
+
+        Object resolve(Object[] args);
+    }
+
+
+    private static final class ArgumentPart implements Part {
+
+        private final int index;
+
+        private final Method[] getters;
+
+        private ArgumentPart(int index, Method[] getters) {
+            this.index = index;
+            this.getters = getters;
+        }
+
+        @Override
+        public Object resolve(Object[] args) {
+            Object value = args[index];
+            for (Method getter : getters) {
+                if (null == value) {
+                    return UNRESOLVED;
+                }
+                value = ReflectionUtils.invokeMethod(getter, value);
+            }
+            return value;
+        }
+    }
+
+
+    private static final class ConcatKeyGenerator implements RedLockKeyGenerator {
+
+        private final Part[] parts;
+
+        private final RedLockKeyGenerator fallback;
+
+        private ConcatKeyGenerator(Part[] parts, RedLockKeyGenerator fallback) {
+            this.parts = parts;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public Object generate(Object target, Object[] args) {
+            StringBuilder builder = new StringBuilder(64);
+            for (Part part : parts) {
+                Object value = part.resolve(args);
+                if (UNRESOLVED == value) {
+                    return fallback.generate(target, args);
+                }
+                if (value instanceof Enum) {
+                    builder.append(((Enum<?>) value).name());
+                } else {
+                    builder.append(value);
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.chobit.spring.redlock.interceptor.spel;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Key generator compiled from the key expression of a redLock operation.
+ *
+ * <p>Bound to a method once, so that the invocations only pass the target and the arguments.
+ *
+ * @author rui.zhang
+ */
+@FunctionalInterface
+public interface RedLockKeyGenerator {
+
+
+    /**
+     * 生成RedLock Key
+     *
+     * @param target 目标对象
+     * @param args   方法参数
+     * @return RedLock Key
+     */
+    @Nullable
+    Object generate(Object target, Object[] args);
+
+}
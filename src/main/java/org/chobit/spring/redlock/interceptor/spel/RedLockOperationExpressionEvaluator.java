@@ -4,8 +4,13 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.expression.AnnotatedElementKey;
 import org.springframework.context.expression.BeanFactoryResolver;
 import org.springframework.context.expression.CachedExpressionEvaluator;
+import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.lang.Nullable;
 
 import java.lang.reflect.Method;
@@ -26,6 +31,12 @@ public class RedLockOperationExpressionEvaluator extends CachedExpressionEvaluat
     private final Map<ExpressionKey, Expression> keyCache = new ConcurrentHashMap<>(64);
 
 
+    public RedLockOperationExpressionEvaluator() {
+        super(new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE,
+                RedLockOperationExpressionEvaluator.class.getClassLoader())));
+    }
+
+
     /**
      * Create an {@link EvaluationContext}.
      *
@@ -43,18 +54,62 @@ public class RedLockOperationExpressionEvaluator extends CachedExpressionEvaluat
                                                      Class<?> targetClass,
                                                      Method targetMethod,
                                                      @Nullable BeanFactory beanFactory) {
+        return createEvaluationContext(method, args, target, targetClass, targetMethod,
+                (null != beanFactory ? new BeanFactoryResolver(beanFactory) : null));
+    }
 
+
+    private EvaluationContext createEvaluationContext(Method method,
+                                                      Object[] args,
+                                                      Object target,
+                                                      Class<?> targetClass,
+                                                      Method targetMethod,
+                                                      @Nullable BeanResolver beanResolver) {
         RedLockExpressionRootObject rootObject =
                 new RedLockExpressionRootObject(method, args, target, targetClass);
         RedLockEvaluationContext evaluationContext =
                 new RedLockEvaluationContext(rootObject, targetMethod, args, getParameterNameDiscoverer());
-        if (null != beanFactory) {
-            evaluationContext.setBeanResolver(new BeanFactoryResolver(beanFactory));
+        if (null != beanResolver) {
+            evaluationContext.setBeanResolver(beanResolver);
         }
         return evaluationContext;
     }
 
 
+    /**
+     * Compile the key expression of a method into a {@link RedLockKeyGenerator}.
+     *
+     * <p>Literals, method parameters, property paths on them and string concatenations of those
+     * are resolved by reading the arguments directly; other expressions are evaluated by SpEL,
+     * compiled in {@link SpelCompilerMode#IMMEDIATE} mode.
+     *
+     * @param keyExpression the key expression
+     * @param method        the method
+     * @param targetClass   the target class
+     * @param targetMethod  the target method
+     * @param beanFactory   the bean factory
+     * @return the key generator
+     */
+    public RedLockKeyGenerator compileKey(String keyExpression,
+                                          Method method,
+                                          Class<?> targetClass,
+                                          Method targetMethod,
+                                          @Nullable BeanFactory beanFactory) {
+        AnnotatedElementKey methodKey = new AnnotatedElementKey(targetMethod, targetClass);
+        Expression expression = getExpression(this.keyCache, methodKey, keyExpression);
+        BeanResolver beanResolver = (null != beanFactory ? new BeanFactoryResolver(beanFactory) : null);
+        RedLockKeyGenerator fallback = (target, args) -> expression.getValue(
+                createEvaluationContext(method, args, target, targetClass, targetMethod, beanResolver));
+
+        if (method.isVarArgs() || targetMethod.isVarArgs() || !(expression instanceof SpelExpression)) {
+            return fallback;
+        }
+        RedLockKeyGenerator compiled = RedLockKeyCompiler.compile(((SpelExpression) expression).getAST(),
+                targetMethod, getParameterNameDiscoverer().getParameterNames(targetMethod), fallback);
+        return (null != compiled ? compiled : fallback);
+    }
+
+
     @Nullable
     public Object key(String keyExpression, AnnotatedElementKey methodKey, EvaluationContext evalContext) {
         return getExpression(this.keyCache, methodKey, keyExpression).getValue(evalContext);
@@ -0,0 +1,174 @@
+package org.chobit.spring.redlock.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RedLockMetrics} backed by Micrometer.
+ *
+ * <p>Meters are tagged with the annotated method and the key template, never with the resolved key:
+ * <ul>
+ *     <li>{@code redlock.acquire}: timer of the time spent acquiring the lock</li>
+ *     <li>{@code redlock.hold}: timer of the time the lock is held</li>
+ *     <li>{@code redlock.acquire.timeouts}: count of the locks not acquired in the wait time</li>
+ *     <li>{@code redlock.acquire.failures}: count of the errors while acquiring the lock</li>
+ *     <li>{@code redlock.acquire.degraded}: count of the invocations proceeding without the lock, the circuit breaker being open</li>
+ *     <li>{@code redlock.lease.expired}: count of the locks whose lease expired before release</li>
+ *     <li>{@code redlock.active}: gauge of the invocations holding the lock</li>
+ * </ul>
+ * The auto renewed locks share two untagged meters:
+ * <ul>
+ *     <li>{@code redlock.renewal.lag}: timer of the delay of the renewals after they were due</li>
+ *     <li>{@code redlock.renewal.lost}: count of the locks found not held anymore when renewed</li>
+ * </ul>
+ *
+ * @author rui.zhang
+ */
+public class MicrometerRedLockMetrics implements RedLockMetrics {
+
+
+    @Nullable
+    private final MeterRegistry registry;
+
+    /**
+     * 续期延迟，与续期丢失的计数，由所有自动续期的锁共享
+     */
+    @Nullable
+    private final Timer renewalLag;
+
+    @Nullable
+    private final Counter renewalLost;
+
+
+    public MicrometerRedLockMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.registry = meterRegistry.getIfAvailable();
+        if (null == this.registry) {
+            this.renewalLag = null;
+            this.renewalLost = null;
+            return;
+        }
+        this.renewalLag = Timer.builder("redlock.renewal.lag")
+                .description("Delay of the lease renewals after they were due")
+                .register(registry);
+        this.renewalLost = Counter.builder("redlock.renewal.lost")
+                .description("Auto renewed locks found not held anymore")
+                .register(registry);
+    }
+
+
+    @Override
+    public RedLockMeters meters(Method method, Class<?> targetClass, String keyTemplate) {
+        if (null == registry) {
+            return RedLockMeters.NOOP;
+        }
+        Tags tags = Tags.of("method", targetClass.getSimpleName() + "." + method.getName(), "key", keyTemplate);
+        return new MicrometerRedLockMeters(registry, tags);
+    }
+
+
+    @Override
+    public void renewed(long lagNanos) {
+        if (null != renewalLag) {
+            renewalLag.record(lagNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    @Override
+    public void leaseLost() {
+        if (null != renewalLost) {
+            renewalLost.increment();
+        }
+    }
+
+
+    private static final class MicrometerRedLockMeters implements RedLockMeters {
+
+        private final Timer acquire;
+
+        private final Timer hold;
+
+        private final Counter timeouts;
+
+        private final Counter failures;
+
+        private final Counter degraded;
+
+        private final Counter leaseExpired;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private MicrometerRedLockMeters(MeterRegistry registry, Tags tags) {
+            this.acquire = Timer.builder("redlock.acquire")
+                    .description("Time spent acquiring the lock")
+                    .tags(tags)
+                    .register(registry);
+            this.hold = Timer.builder("redlock.hold")
+                    .description("Time the lock is held")
+                    .tags(tags)
+                    .register(registry);
+            this.timeouts = Counter.builder("redlock.acquire.timeouts")
+                    .description("Locks not acquired within the wait time")
+                    .tags(tags)
+                    .register(registry);
+            this.failures = Counter.builder("redlock.acquire.failures")
+                    .description("Errors while acquiring the lock")
+                    .tags(tags)
+                    .register(registry);
+            this.degraded = Counter.builder("redlock.acquire.degraded")
+                    .description("Invocations proceeding without the lock while the circuit breaker is open")
+                    .tags(tags)
+                    .register(registry);
+            this.leaseExpired = Counter.builder("redlock.lease.expired")
+                    .description("Locks whose lease expired before release")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("redlock.active", active, AtomicInteger::get)
+                    .description("Invocations holding the lock")
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        @Override
+        public void acquired(long waitNanos) {
+            acquire.record(waitNanos, TimeUnit.NANOSECONDS);
+            active.incrementAndGet();
+        }
+
+        @Override
+        public void timeout(long waitNanos) {
+            acquire.record(waitNanos, TimeUnit.NANOSECONDS);
+            timeouts.increment();
+        }
+
+        @Override
+        public void degraded() {
+            degraded.increment();
+        }
+
+        @Override
+        public void failed(long waitNanos) {
+            acquire.record(waitNanos, TimeUnit.NANOSECONDS);
+            failures.increment();
+        }
+
+        @Override
+        public void released(long holdNanos, boolean leaseExpired) {
+            active.decrementAndGet();
+            hold.record(holdNanos, TimeUnit.NANOSECONDS);
+            if (leaseExpired) {
+                this.leaseExpired.increment();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.chobit.spring.redlock.metrics;
+
+/**
+ * RedLock操作的度量，绑定于注解所在方法及其Key表达式
+ *
+ * @author rui.zhang
+ */
+public interface RedLockMeters {
+
+
+    /**
+     * 不做任何度量的实现，未开启度量时使用
+     */
+    RedLockMeters NOOP = new RedLockMeters() {
+    };
+
+
+    /**
+     * 成功获取锁
+     *
+     * @param waitNanos 等待锁的时长
+     */
+    default void acquired(long waitNanos) {
+    }
+
+
+    /**
+     * 等待超时，未获取到锁
+     *
+     * @param waitNanos 等待锁的时长
+     */
+    default void timeout(long waitNanos) {
+    }
+
+
+    /**
+     * 熔断器打开，未获取锁直接执行方法
+     */
+    default void degraded() {
+    }
+
+
+    /**
+     * 获取锁时发生异常
+     *
+     * @param waitNanos 等待锁的时长
+     */
+    default void failed(long waitNanos) {
+    }
+
+
+    /**
+     * 释放锁
+     *
+     * @param holdNanos    持有锁的时长
+     * @param leaseExpired 释放前锁是否已过期
+     */
+    default void released(long holdNanos, boolean leaseExpired) {
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.chobit.spring.redlock.metrics;
+
+import java.lang.reflect.Method;
+
+/**
+ * RedLock操作的{@link RedLockMeters}的工厂
+ *
+ * <p>每个注解方法及其Key表达式只绑定一次度量，解析后的Key不会成为tag，调用时不为度量分配任何对象
+ *
+ * @author rui.zhang
+ */
+public interface RedLockMetrics {
+
+
+    /**
+     * 获取方法对应的RedLock度量
+     *
+     * @param method      注解所在方法
+     * @param targetClass 目标类
+     * @param keyTemplate RedLock Key 表达式
+     * @return RedLock度量
+     */
+    RedLockMeters meters(Method method, Class<?> targetClass, String keyTemplate);
+
+
+    /**
+     * 自动续期的锁完成一批续期
+     *
+     * @param lagNanos 续期完成时间相对计划续期时间的延迟
+     */
+    default void renewed(long lagNanos) {
+    }
+
+
+    /**
+     * 自动续期时发现锁已不再被持有
+     */
+    default void leaseLost() {
+    }
+
+}
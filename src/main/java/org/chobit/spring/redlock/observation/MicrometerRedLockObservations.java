@@ -0,0 +1,164 @@
+package org.chobit.spring.redlock.observation;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+
+/**
+ * {@link RedLockObservations} backed by Micrometer Observation, bridged to the tracer of the
+ * registry, e.g. OpenTelemetry.
+ *
+ * <p>Each invocation is observed as {@code redlock}, with two children:
+ * <ul>
+ *     <li>{@code redlock.acquire}: the time spent acquiring the lock</li>
+ *     <li>{@code redlock.hold}: the time the lock is held, in scope while a synchronous method runs;
+ *     for a method returning a future or a publisher, until the lock is released, never in scope since
+ *     the lock is acquired and released on other threads</li>
+ * </ul>
+ * The observations carry the low cardinality key values {@code redlock.method}, {@code redlock.key}
+ * (the key template, never the resolved key), {@code redlock.wait} (the wait budget in milliseconds)
+ * and {@code redlock.outcome} ({@code acquired}, {@code timeout}, {@code error}, or {@code degraded}
+ * when the method proceeds without the lock while the circuit breaker is open), and the high
+ * cardinality key value {@code redlock.round.trips}, the requests sent to Redis by the invocation,
+ * a wait inside the lock provider counting as one.
+ *
+ * <p>Micrometer Observation comes with Micrometer 1.10, that is with Spring Boot 3. On Spring Boot 2.7,
+ * whose Micrometer 1.9 has no Observation API, the observations are off and only the meters are recorded,
+ * unless {@code micrometer-observation} 1.10 or later is added, which depends on {@code micrometer-commons}
+ * alone and coexists with {@code micrometer-core} 1.9.
+ *
+ * @author rui.zhang
+ */
+public class MicrometerRedLockObservations implements RedLockObservations {
+
+
+    private static final String OUTCOME = "redlock.outcome";
+
+    private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+
+    public MicrometerRedLockObservations(ObjectProvider<ObservationRegistry> observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+
+    @Override
+    public RedLockObserver observer(Method method, Class<?> targetClass, String keyTemplate, long waitMillis) {
+        ObservationRegistry registry = observationRegistry.getIfAvailable();
+        if (null == registry || registry.isNoop()) {
+            return RedLockObserver.NOOP;
+        }
+        return new MicrometerRedLockObserver(registry,
+                targetClass.getSimpleName() + "." + method.getName(), keyTemplate, String.valueOf(waitMillis));
+    }
+
+
+    private static final class MicrometerRedLockObserver implements RedLockObserver {
+
+        private final ObservationRegistry registry;
+
+        private final String method;
+
+        private final String keyTemplate;
+
+        private final String wait;
+
+        private MicrometerRedLockObserver(ObservationRegistry registry, String method, String keyTemplate, String wait) {
+            this.registry = registry;
+            this.method = method;
+            this.keyTemplate = keyTemplate;
+            this.wait = wait;
+        }
+
+        @Override
+        public Span start() {
+            Observation lock = observation("redlock", null).start();
+            return new MicrometerSpan(lock, observation("redlock.acquire", lock).start(), true);
+        }
+
+        @Override
+        public Span startAsync() {
+            Observation lock = observation("redlock", null).start();
+            return new MicrometerSpan(lock, observation("redlock.acquire", lock).start(), false);
+        }
+
+        private Observation observation(String name, Observation parent) {
+            Observation observation = Observation.createNotStarted(name, registry)
+                    .contextualName(name + " " + method)
+                    .lowCardinalityKeyValue("redlock.method", method)
+                    .lowCardinalityKeyValue("redlock.key", keyTemplate)
+                    .lowCardinalityKeyValue("redlock.wait", wait);
+            return (null != parent ? observation.parentObservation(parent) : observation);
+        }
+
+        private final class MicrometerSpan implements Span {
+
+            private final Observation lock;
+
+            private final Observation acquire;
+
+            /**
+             * Whether the hold is in scope, only if the method runs on the thread acquiring and releasing the lock
+             */
+            private final boolean scoped;
+
+            private Observation hold;
+
+            private Observation.Scope scope;
+
+            private MicrometerSpan(Observation lock, Observation acquire, boolean scoped) {
+                this.lock = lock;
+                this.acquire = acquire;
+                this.scoped = scoped;
+            }
+
+            @Override
+            public void acquired() {
+                lock.lowCardinalityKeyValue(OUTCOME, "acquired");
+                acquire.lowCardinalityKeyValue(OUTCOME, "acquired").stop();
+                this.hold = observation("redlock.hold", lock).start();
+                this.scope = (scoped ? hold.openScope() : null);
+            }
+
+            @Override
+            public void timeout() {
+                lock.lowCardinalityKeyValue(OUTCOME, "timeout");
+                acquire.lowCardinalityKeyValue(OUTCOME, "timeout").stop();
+            }
+
+            @Override
+            public void skipped() {
+                lock.lowCardinalityKeyValue(OUTCOME, "degraded");
+                acquire.lowCardinalityKeyValue(OUTCOME, "degraded").stop();
+            }
+
+            @Override
+            public void failed(Throwable error) {
+                lock.lowCardinalityKeyValue(OUTCOME, "error").error(error);
+                acquire.lowCardinalityKeyValue(OUTCOME, "error").error(error).stop();
+            }
+
+            @Override
+            public void error(Throwable error) {
+                if (null != hold) {
+                    hold.error(error);
+                }
+                lock.error(error);
+            }
+
+            @Override
+            public void end(int roundTrips) {
+                if (null != scope) {
+                    scope.close();
+                }
+                if (null != hold) {
+                    hold.stop();
+                }
+                lock.highCardinalityKeyValue("redlock.round.trips", String.valueOf(roundTrips)).stop();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.chobit.spring.redlock.observation;
+
+import java.lang.reflect.Method;
+
+/**
+ * RedLock操作的{@link RedLockObserver}的工厂
+ *
+ * <p>每个注解方法只绑定一次观测，调用时仅承担观测本身的开销，未开启追踪时没有任何开销
+ *
+ * @author rui.zhang
+ */
+public interface RedLockObservations {
+
+
+    /**
+     * 获取方法对应的RedLock观测
+     *
+     * @param method      注解所在方法
+     * @param targetClass 目标类
+     * @param keyTemplate RedLock Key 表达式
+     * @param waitMillis  等待锁的时长，单位毫秒
+     * @return RedLock观测
+     */
+    RedLockObserver observer(Method method, Class<?> targetClass, String keyTemplate, long waitMillis);
+
+}
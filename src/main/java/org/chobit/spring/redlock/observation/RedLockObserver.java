@@ -0,0 +1,92 @@
+package org.chobit.spring.redlock.observation;
+
+/**
+ * RedLock操作的观测，绑定于注解所在方法及其Key表达式
+ *
+ * @author rui.zhang
+ */
+public interface RedLockObserver {
+
+
+    /**
+     * 不做任何观测的实现，未开启追踪时使用
+     */
+    RedLockObserver NOOP = new RedLockObserver() {
+    };
+
+
+    /**
+     * 开始观测一次调用，同时开始获取锁
+     *
+     * @return 本次调用的观测
+     */
+    default Span start() {
+        return Span.NOOP;
+    }
+
+
+    /**
+     * 开始观测一次异步调用，同时开始获取锁；获取、持有与释放锁可能位于不同的线程，观测不可绑定线程
+     *
+     * @return 本次调用的观测
+     */
+    default Span startAsync() {
+        return start();
+    }
+
+
+    /**
+     * 一次调用的观测：获取锁，获取到锁后持有锁
+     */
+    interface Span {
+
+        /**
+         * 不做任何观测的实现
+         */
+        Span NOOP = new Span() {
+        };
+
+        /**
+         * 成功获取锁，开始持有锁
+         */
+        default void acquired() {
+        }
+
+        /**
+         * 等待超时，未获取到锁
+         */
+        default void timeout() {
+        }
+
+        /**
+         * 熔断器打开，未获取锁直接执行方法
+         */
+        default void skipped() {
+        }
+
+        /**
+         * 获取锁时发生异常
+         *
+         * @param error 异常
+         */
+        default void failed(Throwable error) {
+        }
+
+        /**
+         * 持有锁期间方法抛出异常
+         *
+         * @param error 异常
+         */
+        default void error(Throwable error) {
+        }
+
+        /**
+         * 结束观测，锁已释放或未获取到
+         *
+         * @param roundTrips 本次调用发往Redis的请求数
+         */
+        default void end(int roundTrips) {
+        }
+    }
+
+}
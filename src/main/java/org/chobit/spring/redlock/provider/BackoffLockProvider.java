@@ -0,0 +1,194 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decorator of a {@link LockProvider} which waits for the locks by spinning instead of by the
+ * notifications of the backend.
+ *
+ * <p>A lock is attempted without waiting, and attempted again after a bounded exponential backoff
+ * with jitter until the wait time is exhausted. No channel is subscribed per key as the Redisson
+ * locks do while waiting, which saves the subscription connections when the waits are short and
+ * the keys are many, at the price of some attempts in vain.
+ *
+ * @author rui.zhang
+ */
+public class BackoffLockProvider implements LockProvider {
+
+
+    /**
+     * Cap of the doublings, way beyond any reasonable max backoff.
+     */
+    private static final int MAX_DOUBLINGS = 20;
+
+    private final LockProvider delegate;
+
+    private final long initialBackoffNanos;
+
+    private final long maxBackoffNanos;
+
+    private volatile ScheduledExecutorService timer;
+
+
+    /**
+     * @param delegate       the provider of the locks
+     * @param initialBackoff the backoff after the first failed attempt, doubled after each failed attempt
+     * @param maxBackoff     the max backoff
+     * @param unit           the time unit of the backoffs
+     */
+    public BackoffLockProvider(LockProvider delegate, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid backoff, initial: " + initialBackoff + ", max: " + maxBackoff);
+        }
+        this.delegate = delegate;
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+
+    @Override
+    public LockHandle getLock(String key, LockMode mode) {
+        return new BackoffLockHandle(delegate.getLock(key, mode));
+    }
+
+
+    @Override
+    public LockHandle getSemaphore(String key, int permits) {
+        return new BackoffLockHandle(delegate.getSemaphore(key, permits));
+    }
+
+
+    @Override
+    public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+        return delegate.renewAsync(leases, leaseMillis);
+    }
+
+
+    /**
+     * Stop the timer of the asynchronous attempts, the delegate is not shut down.
+     */
+    public void shutdown() {
+        ScheduledExecutorService timer = this.timer;
+        if (null != timer) {
+            timer.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Equal jitter: half of the backoff is fixed, the other half random, so the contenders spread
+     * out without retrying at once.
+     */
+    private long backoffNanos(int attempt) {
+        long backoff = Math.min(initialBackoffNanos << Math.min(attempt, MAX_DOUBLINGS), maxBackoffNanos);
+        long half = backoff >>> 1;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+
+    private ScheduledExecutorService timer() {
+        ScheduledExecutorService timer = this.timer;
+        if (null == timer) {
+            synchronized (this) {
+                timer = this.timer;
+                if (null == timer) {
+                    timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "redlock-backoff-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.timer = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+
+    private final class BackoffLockHandle implements LockHandle {
+
+        private final LockHandle lock;
+
+        private BackoffLockHandle(LockHandle lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(waitTime);
+            for (int attempt = 0; ; attempt++) {
+                if (lock.tryLock(0, leaseTime, unit)) {
+                    return true;
+                }
+                long remain = deadline - System.nanoTime();
+                if (remain <= 0) {
+                    return false;
+                }
+                // parks only, so virtual threads are unmounted while backing off
+                LockSupport.parkNanos(this, Math.min(backoffNanos(attempt), remain));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            attempt(System.nanoTime() + unit.toNanos(waitTime), leaseTime, unit, ownerId, 0, result);
+            return result;
+        }
+
+        private void attempt(long deadline, long leaseTime, TimeUnit unit, long ownerId, int attempt,
+                             CompletableFuture<Boolean> result) {
+            lock.tryLockAsync(0, leaseTime, unit, ownerId).whenComplete((locked, ex) -> {
+                if (null != ex) {
+                    result.completeExceptionally(ex);
+                    return;
+                }
+                long remain = deadline - System.nanoTime();
+                if (locked || remain <= 0) {
+                    result.complete(locked);
+                    return;
+                }
+                timer().schedule(() -> attempt(deadline, leaseTime, unit, ownerId, attempt + 1, result),
+                        Math.min(backoffNanos(attempt), remain), TimeUnit.NANOSECONDS);
+            });
+        }
+
+        @Override
+        public CompletionStage<Void> unlockAsync(long ownerId) {
+            return lock.unlockAsync(ownerId);
+        }
+
+        @Override
+        public CompletionStage<Long> remainTimeToLiveAsync() {
+            return lock.remainTimeToLiveAsync();
+        }
+
+        @Override
+        public CompletionStage<Boolean> forceUnlockAsync() {
+            return lock.forceUnlockAsync();
+        }
+
+        @Override
+        public String toString() {
+            return lock.toString();
+        }
+    }
+
+}
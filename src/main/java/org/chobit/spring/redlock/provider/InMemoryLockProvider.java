@@ -0,0 +1,670 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link LockProvider} locking within the JVM only, for single node deployments and tests.
+ *
+ * <p>The keys are spread over stripes, each guarded by a {@link ReentrantLock}, so an uncontended
+ * acquire is a short critical section without any I/O. The locks follow the semantics of the
+ * Redisson locks: reentrant by owner id, shared by the readers, and released once the lease expired.
+ * The waiters are granted in arrival order. The states of expired locks are evicted by a timer.
+ * The semaphores share the same states, each permit expiring on its own lease.
+ *
+ * @author rui.zhang
+ */
+public class InMemoryLockProvider implements LockProvider {
+
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Results of the attempts which are not queued.
+     */
+    private static final Waiter ACQUIRED = new Waiter(LockMode.REENTRANT, 0, 0, 0);
+
+    private static final Waiter REJECTED = new Waiter(LockMode.REENTRANT, 0, 0, 0);
+
+    private final Stripe[] stripes;
+
+    private final int mask;
+
+    private volatile ScheduledExecutorService timer;
+
+
+    public InMemoryLockProvider() {
+        this(DEFAULT_STRIPES);
+    }
+
+
+    public InMemoryLockProvider(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+
+    @Override
+    public LockHandle getLock(String key, LockMode mode) {
+        return new InMemoryLockHandle(key, mode, 0);
+    }
+
+
+    @Override
+    public LockHandle getSemaphore(String key, int permits) {
+        return new InMemoryLockHandle(key, LockMode.REENTRANT, permits);
+    }
+
+
+    @Override
+    public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+        boolean[] renewed = new boolean[leases.size()];
+        long leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        for (int i = 0; i < renewed.length; i++) {
+            LockLease lease = leases.get(i);
+            Stripe stripe = stripe(lease.getKey());
+            stripe.lock.lock();
+            try {
+                State state = stripe.states.get(lease.getKey());
+                long now = System.nanoTime();
+                if (null != state && !state.isExpired(now) && state.isHeldBy(lease.getOwnerId(), lease.getMode())) {
+                    state.expireAt = now + leaseNanos;
+                    renewed[i] = true;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return CompletableFuture.completedFuture(renewed);
+    }
+
+
+    /**
+     * Stop the timer of the waiters and the eviction.
+     */
+    public void shutdown() {
+        ScheduledExecutorService timer = this.timer;
+        if (null != timer) {
+            timer.shutdownNow();
+        }
+    }
+
+
+    private Stripe stripe(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+
+    private ScheduledExecutorService timer() {
+        ScheduledExecutorService timer = this.timer;
+        if (null == timer) {
+            synchronized (this) {
+                timer = this.timer;
+                if (null == timer) {
+                    timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "redlock-in-memory-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    timer.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    this.timer = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+
+    /**
+     * Evict the states of the expired locks nobody waits for.
+     */
+    private void sweep() {
+        for (Stripe stripe : stripes) {
+            List<Waiter> granted = null;
+            stripe.lock.lock();
+            try {
+                long now = System.nanoTime();
+                Iterator<State> it = stripe.states.values().iterator();
+                while (it.hasNext()) {
+                    State state = it.next();
+                    if (state.isExpired(now)) {
+                        state.expire(now);
+                        granted = state.grant(now, granted);
+                    }
+                    if (state.isIdle()) {
+                        it.remove();
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+            complete(granted);
+        }
+    }
+
+
+    /**
+     * Acquire the lock, or queue a waiter if it can't be acquired at once.
+     *
+     * @return {@link #ACQUIRED}, {@link #REJECTED} or the queued waiter
+     */
+    private Waiter acquire(String key, LockMode mode, int permits, long waitNanos, long leaseNanos, long ownerId) {
+        Stripe stripe = stripe(key);
+        Waiter waiter = null;
+        List<Waiter> granted = null;
+        stripe.lock.lock();
+        try {
+            long now = System.nanoTime();
+            State state = stripe.states.get(key);
+            if (null == state) {
+                state = new State(permits);
+                stripe.states.put(key, state);
+            } else if (state.isExpired(now)) {
+                state.expire(now);
+                granted = state.grant(now, null);
+            }
+            // the owners re-enter at once, the others queue behind the waiters
+            if ((state.waiters.isEmpty() || state.isOwnedBy(ownerId)) && state.tryAcquire(mode, ownerId, leaseNanos, now)) {
+                if (NEVER != state.expireAt) {
+                    timer();
+                }
+                waiter = ACQUIRED;
+            } else if (waitNanos <= 0) {
+                if (state.isIdle()) {
+                    stripe.states.remove(key);
+                }
+                waiter = REJECTED;
+            } else {
+                waiter = new Waiter(mode, ownerId, leaseNanos, now + waitNanos);
+                state.waiters.add(waiter);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        complete(granted);
+        if (ACQUIRED != waiter && REJECTED != waiter) {
+            schedule(key, waiter);
+        }
+        return waiter;
+    }
+
+
+    private void unlock(String key, LockMode mode, long ownerId) {
+        Stripe stripe = stripe(key);
+        List<Waiter> granted = null;
+        boolean released = false;
+        stripe.lock.lock();
+        try {
+            State state = stripe.states.get(key);
+            long now = System.nanoTime();
+            if (null != state) {
+                // the expired lock, or the expired permits, are not held anymore
+                if (state.isExpired(now)) {
+                    state.expire(now);
+                    granted = state.grant(now, null);
+                }
+                released = state.release(mode, ownerId);
+                if (released) {
+                    granted = state.grant(now, granted);
+                }
+                if (state.isIdle()) {
+                    stripe.states.remove(key);
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        complete(granted);
+        if (!released) {
+            throw new IllegalMonitorStateException("attempt to unlock lock, not locked by current owner: " + ownerId);
+        }
+    }
+
+
+    private boolean forceUnlock(String key) {
+        Stripe stripe = stripe(key);
+        List<Waiter> granted;
+        boolean locked;
+        stripe.lock.lock();
+        try {
+            State state = stripe.states.get(key);
+            long now = System.nanoTime();
+            if (null == state) {
+                return false;
+            }
+            locked = (state.isLocked() && !state.isExpired(now));
+            state.clear();
+            granted = state.grant(now, null);
+            if (state.isIdle()) {
+                stripe.states.remove(key);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        complete(granted);
+        return locked;
+    }
+
+
+    private long remainTimeToLive(String key) {
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            State state = stripe.states.get(key);
+            long now = System.nanoTime();
+            if (null == state || state.isExpired(now) || !state.isLocked()) {
+                return -2;
+            }
+            return NEVER == state.expireAt ? -1 : TimeUnit.NANOSECONDS.toMillis(state.expireAt - now);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+
+    /**
+     * Check the waiter again once its wait time or the lease of the holders is over.
+     */
+    private void schedule(String key, Waiter waiter) {
+        Stripe stripe = stripe(key);
+        long delay;
+        stripe.lock.lock();
+        try {
+            State state = stripe.states.get(key);
+            long expireAt = (null != state ? state.expireAt : NEVER);
+            delay = (NEVER == expireAt ? waiter.deadline : Math.min(waiter.deadline, expireAt)) - System.nanoTime();
+        } finally {
+            stripe.lock.unlock();
+        }
+        timer().schedule(() -> check(key, waiter), Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+
+    private void check(String key, Waiter waiter) {
+        Stripe stripe = stripe(key);
+        List<Waiter> granted = null;
+        boolean timeout = false;
+        stripe.lock.lock();
+        try {
+            State state = stripe.states.get(key);
+            if (null == state || !state.waiters.contains(waiter)) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (state.isExpired(now)) {
+                state.expire(now);
+                granted = state.grant(now, null);
+            }
+            if (state.waiters.contains(waiter) && now - waiter.deadline >= 0) {
+                state.waiters.remove(waiter);
+                granted = state.grant(now, granted);
+                timeout = true;
+            }
+            if (state.isIdle()) {
+                stripe.states.remove(key);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        complete(granted);
+        if (timeout) {
+            waiter.future.complete(false);
+        } else if (!waiter.future.isDone()) {
+            schedule(key, waiter);
+        }
+    }
+
+
+    /**
+     * Give up waiting, the lock is released at once if it is granted meanwhile.
+     */
+    private void cancel(String key, Waiter waiter) {
+        Stripe stripe = stripe(key);
+        List<Waiter> granted = null;
+        stripe.lock.lock();
+        try {
+            State state = stripe.states.get(key);
+            if (null != state && state.waiters.remove(waiter)) {
+                granted = state.grant(System.nanoTime(), null);
+                if (state.isIdle()) {
+                    stripe.states.remove(key);
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        complete(granted);
+        waiter.future.thenAccept(locked -> {
+            if (locked) {
+                unlock(key, waiter.mode, waiter.ownerId);
+            }
+        });
+        waiter.future.complete(false);
+    }
+
+
+    private static void complete(List<Waiter> granted) {
+        if (null != granted) {
+            for (Waiter waiter : granted) {
+                waiter.future.complete(true);
+            }
+        }
+    }
+
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Map<String, State> states = new HashMap<>();
+    }
+
+
+    /**
+     * State of a lock or a semaphore, guarded by the lock of its stripe.
+     */
+    private static final class State {
+
+        /**
+         * The permits of a semaphore, 0 for a lock
+         */
+        private final int permits;
+
+        /**
+         * The permits held, only for a semaphore
+         */
+        private final List<Permit> leases;
+
+        private long owner;
+
+        private int holds;
+
+        private final Map<Long, Integer> readers = new HashMap<>(4);
+
+        private long expireAt = NEVER;
+
+        private final Deque<Waiter> waiters = new ArrayDeque<>(4);
+
+        private State(int permits) {
+            this.permits = permits;
+            this.leases = (permits > 0 ? new ArrayList<>(permits) : null);
+        }
+
+        private boolean tryAcquire(LockMode mode, long ownerId, long leaseNanos, long now) {
+            if (null != leases) {
+                if (leases.size() >= permits) {
+                    return false;
+                }
+                long until = (leaseNanos > 0 ? now + leaseNanos : NEVER);
+                leases.add(new Permit(ownerId, until));
+                // the semaphore expires when its first permit does
+                this.expireAt = Math.min(expireAt, until);
+                return true;
+            }
+            if (LockMode.READ == mode) {
+                if (0 != owner && ownerId != owner) {
+                    return false;
+                }
+                readers.merge(ownerId, 1, Integer::sum);
+            } else {
+                if (0 == owner ? !readers.isEmpty() : ownerId != owner) {
+                    return false;
+                }
+                this.owner = ownerId;
+                this.holds++;
+            }
+            long until = (leaseNanos > 0 ? now + leaseNanos : NEVER);
+            boolean shared = (LockMode.READ == mode && readers.size() > 1);
+            this.expireAt = (shared && (NEVER == expireAt || NEVER == until) ? NEVER :
+                    shared ? Math.max(expireAt, until) : until);
+            return true;
+        }
+
+        private boolean release(LockMode mode, long ownerId) {
+            if (null != leases) {
+                for (int i = 0; i < leases.size(); i++) {
+                    if (leases.get(i).ownerId == ownerId) {
+                        leases.remove(i);
+                        this.expireAt = firstExpireAt();
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (LockMode.READ == mode) {
+                Integer count = readers.get(ownerId);
+                if (null == count) {
+                    return false;
+                }
+                if (1 == count) {
+                    readers.remove(ownerId);
+                } else {
+                    readers.put(ownerId, count - 1);
+                }
+            } else {
+                if (0 == owner || ownerId != owner) {
+                    return false;
+                }
+                if (--holds == 0) {
+                    this.owner = 0;
+                }
+            }
+            if (!isLocked()) {
+                this.expireAt = NEVER;
+            }
+            return true;
+        }
+
+        /**
+         * Grant the lock to the waiters in arrival order, until one can't acquire it.
+         */
+        private List<Waiter> grant(long now, List<Waiter> granted) {
+            Waiter next;
+            while (null != (next = waiters.peek()) && tryAcquire(next.mode, next.ownerId, next.leaseNanos, now)) {
+                waiters.poll();
+                if (null == granted) {
+                    granted = new ArrayList<>(2);
+                }
+                granted.add(next);
+            }
+            return granted;
+        }
+
+        private boolean isHeldBy(long ownerId, LockMode mode) {
+            if (null != leases) {
+                return isLeasedBy(ownerId);
+            }
+            return LockMode.READ == mode ? readers.containsKey(ownerId) : (0 != owner && ownerId == owner);
+        }
+
+        private boolean isOwnedBy(long ownerId) {
+            return (0 != owner && ownerId == owner) || readers.containsKey(ownerId) || (null != leases && isLeasedBy(ownerId));
+        }
+
+        private boolean isLeasedBy(long ownerId) {
+            for (Permit permit : leases) {
+                if (permit.ownerId == ownerId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isLocked() {
+            return 0 != owner || !readers.isEmpty() || (null != leases && !leases.isEmpty());
+        }
+
+        private boolean isExpired(long now) {
+            return NEVER != expireAt && isLocked() && now - expireAt > 0;
+        }
+
+        private boolean isIdle() {
+            return !isLocked() && waiters.isEmpty();
+        }
+
+        /**
+         * Release what expired, the whole lock or the expired permits of a semaphore.
+         */
+        private void expire(long now) {
+            if (null == leases) {
+                clear();
+                return;
+            }
+            leases.removeIf(permit -> now - permit.expireAt > 0);
+            this.expireAt = firstExpireAt();
+        }
+
+        private long firstExpireAt() {
+            long first = NEVER;
+            for (Permit permit : leases) {
+                first = Math.min(first, permit.expireAt);
+            }
+            return first;
+        }
+
+        private void clear() {
+            this.owner = 0;
+            this.holds = 0;
+            this.readers.clear();
+            if (null != leases) {
+                leases.clear();
+            }
+            this.expireAt = NEVER;
+        }
+    }
+
+
+    private static final class Permit {
+
+        private final long ownerId;
+
+        private final long expireAt;
+
+        private Permit(long ownerId, long expireAt) {
+            this.ownerId = ownerId;
+            this.expireAt = expireAt;
+        }
+    }
+
+
+    private static final class Waiter {
+
+        private final LockMode mode;
+
+        private final long ownerId;
+
+        private final long leaseNanos;
+
+        private final long deadline;
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private Waiter(LockMode mode, long ownerId, long leaseNanos, long deadline) {
+            this.mode = mode;
+            this.ownerId = ownerId;
+            this.leaseNanos = leaseNanos;
+            this.deadline = deadline;
+        }
+    }
+
+
+    private final class InMemoryLockHandle implements LockHandle {
+
+        private final String key;
+
+        private final LockMode mode;
+
+        private final int permits;
+
+        private InMemoryLockHandle(String key, LockMode mode, int permits) {
+            this.key = key;
+            this.mode = mode;
+            this.permits = permits;
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            Waiter waiter = acquire(key, mode, permits, unit.toNanos(waitTime),
+                    leaseTime > 0 ? unit.toNanos(leaseTime) : -1, Thread.currentThread().getId());
+            if (ACQUIRED == waiter || REJECTED == waiter) {
+                return ACQUIRED == waiter;
+            }
+            try {
+                return waiter.future.get();
+            } catch (InterruptedException e) {
+                cancel(key, waiter);
+                throw e;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public void unlock() {
+            InMemoryLockProvider.this.unlock(key, mode, Thread.currentThread().getId());
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+            Waiter waiter = acquire(key, mode, permits, unit.toNanos(waitTime), leaseTime > 0 ? unit.toNanos(leaseTime) : -1, ownerId);
+            if (ACQUIRED == waiter || REJECTED == waiter) {
+                return CompletableFuture.completedFuture(ACQUIRED == waiter);
+            }
+            return waiter.future;
+        }
+
+        @Override
+        public CompletionStage<Void> unlockAsync(long ownerId) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            try {
+                InMemoryLockProvider.this.unlock(key, mode, ownerId);
+                future.complete(null);
+            } catch (IllegalMonitorStateException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        @Override
+        public CompletionStage<Long> remainTimeToLiveAsync() {
+            return CompletableFuture.completedFuture(remainTimeToLive(key));
+        }
+
+        @Override
+        public CompletionStage<Boolean> forceUnlockAsync() {
+            return CompletableFuture.completedFuture(forceUnlock(key));
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+}
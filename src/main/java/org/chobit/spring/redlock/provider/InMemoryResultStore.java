@@ -0,0 +1,62 @@
+package org.chobit.spring.redlock.provider;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultStore} keeping the results within the JVM, to be used with the {@link InMemoryLockProvider}.
+ *
+ * <p>Expired results are dropped when read, and all of them are swept once the size exceeds a threshold.
+ *
+ * @author rui.zhang
+ */
+public class InMemoryResultStore implements ResultStore {
+
+
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+
+    @Override
+    public CompletionStage<Void> putAsync(String key, Object value, long ttlMillis) {
+        long now = System.nanoTime();
+        if (slots.size() >= SWEEP_THRESHOLD) {
+            slots.values().removeIf(slot -> slot.isExpired(now));
+        }
+        slots.put(key, new Slot(value, now + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+        return CompletableFuture.completedFuture(null);
+    }
+
+
+    @Override
+    public CompletionStage<Object> getAsync(String key) {
+        Slot slot = slots.get(key);
+        if (null != slot && slot.isExpired(System.nanoTime())) {
+            slots.remove(key, slot);
+            slot = null;
+        }
+        return CompletableFuture.completedFuture(null != slot ? slot.value : null);
+    }
+
+
+    private static final class Slot {
+
+        private final Object value;
+
+        private final long expireAt;
+
+        private Slot(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expireAt >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.chobit.spring.redlock.provider;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由{@link LockProvider}提供的Key在某一类型下的锁
+ *
+ * <p>阻塞方法获取的锁由当前线程持有，异步方法获取的锁由指定的持有者ID持有，可在其他线程释放；同一持有者可重入
+ *
+ * @author rui.zhang
+ */
+public interface LockHandle {
+
+
+    /**
+     * 获取锁，由当前线程持有
+     *
+     * @param waitTime  等待时间
+     * @param leaseTime 持有锁的时长，为负数时不过期
+     * @param unit      时间单位
+     * @return 是否获取到锁
+     * @throws InterruptedException 等待时被中断
+     */
+    boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException;
+
+
+    /**
+     * 释放当前线程持有的锁
+     */
+    void unlock();
+
+
+    /**
+     * 异步获取锁，由指定的持有者持有
+     *
+     * @param waitTime  等待时间
+     * @param leaseTime 持有锁的时长，为负数时不过期
+     * @param unit      时间单位
+     * @param ownerId   持有者ID
+     * @return 是否获取到锁
+     */
+    CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId);
+
+
+    /**
+     * 异步释放指定持有者持有的锁
+     *
+     * @param ownerId 持有者ID
+     * @return 释放结果，未被该持有者持有时以IllegalMonitorStateException失败
+     */
+    CompletionStage<Void> unlockAsync(long ownerId);
+
+
+    /**
+     * 异步获取锁的剩余时长
+     *
+     * @return 剩余毫秒数，未被持有时为-2，不过期时为-1
+     */
+    CompletionStage<Long> remainTimeToLiveAsync();
+
+
+    /**
+     * 异步强制释放锁，不论由谁持有
+     *
+     * @return 释放前是否被持有
+     */
+    CompletionStage<Boolean> forceUnlockAsync();
+
+}
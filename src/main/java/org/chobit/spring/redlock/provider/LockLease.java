@@ -0,0 +1,48 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+
+/**
+ * 持有者所持有的锁的租约，由{@link LockProvider#renewAsync}续期
+ *
+ * @author rui.zhang
+ */
+public final class LockLease {
+
+
+    /**
+     * 锁的Key
+     */
+    private final String key;
+
+
+    /**
+     * 锁的类型
+     */
+    private final LockMode mode;
+
+
+    /**
+     * 持有者ID
+     */
+    private final long ownerId;
+
+
+    public LockLease(String key, LockMode mode, long ownerId) {
+        this.key = key;
+        this.mode = mode;
+        this.ownerId = ownerId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public LockMode getMode() {
+        return mode;
+    }
+
+    public long getOwnerId() {
+        return ownerId;
+    }
+}
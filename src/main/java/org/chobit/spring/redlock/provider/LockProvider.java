@@ -0,0 +1,61 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * RedLock切面获取锁的SPI
+ *
+ * <p>默认为{@link RedissonLockProvider}，{@link InMemoryLockProvider}仅在JVM内加锁，适用于单节点部署或测试
+ *
+ * @author rui.zhang
+ */
+public interface LockProvider {
+
+
+    /**
+     * 获取Key对应的锁
+     *
+     * @param key  锁的Key
+     * @param mode 锁的类型
+     * @return 锁
+     */
+    LockHandle getLock(String key, LockMode mode);
+
+
+    /**
+     * 获取Key对应的信号量，最多permits个持有者同时持有，以获取锁的方式获取一个许可，
+     * 许可在租约到期后自动释放；返回的信号量每次只持有一个许可
+     *
+     * @param key     信号量的Key
+     * @param permits 许可数
+     * @return 信号量
+     */
+    LockHandle getSemaphore(String key, int permits);
+
+
+    /**
+     * 获取Key对应的锁，许可数大于1时为信号量
+     *
+     * @param key     锁的Key
+     * @param mode    锁的类型
+     * @param permits 许可数
+     * @return 锁或信号量
+     */
+    default LockHandle getLock(String key, LockMode mode, int permits) {
+        return (permits > 1 ? getSemaphore(key, permits) : getLock(key, mode));
+    }
+
+
+    /**
+     * 批量续期，仍被原持有者持有的锁续期为指定时长
+     *
+     * @param leases      需续期的锁
+     * @param leaseMillis 续期后的租约时长，单位毫秒
+     * @return 各锁是否续期成功，与leases的顺序一致
+     */
+    CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis);
+
+}
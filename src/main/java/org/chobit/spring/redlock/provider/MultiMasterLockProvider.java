@@ -0,0 +1,384 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link LockProvider} implementing the Redlock algorithm over independent Redis masters.
+ *
+ * <p>A lock is acquired on all the masters in parallel, each attempt bounded by the node timeout,
+ * and is held once a majority of the masters granted it, so the latency is the one of the slowest
+ * master of the quorum instead of the sum. The lock is valid only if the lease time left, after
+ * subtracting the time spent and the clock drift, is still positive. On failure the lock is
+ * released on all the masters, including the ones answering late, and attempted again after
+ * a random delay until the wait time is exhausted. Releases and renewals are sent to all the
+ * masters at once, a renewal succeeds if a majority of the masters renewed the lease.
+ *
+ * <p>The masters are owned by this provider and shut down with it.
+ *
+ * @author rui.zhang
+ */
+public class MultiMasterLockProvider implements LockProvider {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(MultiMasterLockProvider.class);
+
+    /**
+     * Fixed part of the clock drift, for the precision of the expiration in Redis.
+     */
+    private static final long MIN_CLOCK_DRIFT_MILLIS = 2;
+
+    /**
+     * Max random delay before acquiring again, so that the contenders are desynchronized.
+     */
+    private static final long MAX_RETRY_DELAY_MILLIS = 50;
+
+    private final List<RedissonClient> masters;
+
+    private final RedissonLockProvider[] nodes;
+
+    private final int quorum;
+
+    private final long nodeTimeoutMillis;
+
+    private final double clockDriftFactor;
+
+    private volatile ScheduledExecutorService timer;
+
+
+    /**
+     * @param masters           the clients of the independent masters
+     * @param nodeTimeoutMillis the max time to wait for a master in each attempt
+     * @param clockDriftFactor  the clock drift between the masters, relative to the lease time
+     */
+    public MultiMasterLockProvider(List<RedissonClient> masters, long nodeTimeoutMillis, double clockDriftFactor) {
+        if (masters.isEmpty()) {
+            throw new IllegalArgumentException("At least one redis master is required");
+        }
+        if (nodeTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("The node timeout must be positive: " + nodeTimeoutMillis);
+        }
+        this.masters = new ArrayList<>(masters);
+        this.nodes = new RedissonLockProvider[masters.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            this.nodes[i] = new RedissonLockProvider(masters.get(i));
+        }
+        this.quorum = nodes.length / 2 + 1;
+        this.nodeTimeoutMillis = nodeTimeoutMillis;
+        this.clockDriftFactor = clockDriftFactor;
+    }
+
+
+    /**
+     * The number of masters which must grant a lock.
+     *
+     * @return the quorum
+     */
+    public int getQuorum() {
+        return quorum;
+    }
+
+
+    /**
+     * The clients of the masters, in the order they were given.
+     *
+     * @return the masters
+     */
+    public List<RedissonClient> getMasters() {
+        return Collections.unmodifiableList(masters);
+    }
+
+
+    @Override
+    public LockHandle getLock(String key, LockMode mode) {
+        LockHandle[] handles = new LockHandle[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            handles[i] = nodes[i].getLock(key, mode);
+        }
+        return new MultiMasterLockHandle(key, handles);
+    }
+
+
+    /**
+     * A permit is acquired on a majority of the nodes, the semaphore of each node counting the permits independently.
+     */
+    @Override
+    public LockHandle getSemaphore(String key, int permits) {
+        LockHandle[] handles = new LockHandle[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            handles[i] = nodes[i].getSemaphore(key, permits);
+        }
+        return new MultiMasterLockHandle(key, handles);
+    }
+
+
+    @Override
+    public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+        boolean[] none = new boolean[leases.size()];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            futures[i] = withTimeout(nodes[i].renewAsync(leases, leaseMillis), none);
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> {
+            boolean[] renewed = new boolean[leases.size()];
+            for (int j = 0; j < renewed.length; j++) {
+                int count = 0;
+                for (CompletableFuture<?> future : futures) {
+                    if (((boolean[]) future.join())[j]) {
+                        count++;
+                    }
+                }
+                renewed[j] = (count >= quorum);
+            }
+            return renewed;
+        });
+    }
+
+
+    /**
+     * Stop the timer of the node timeouts and shut down the masters.
+     */
+    public void shutdown() {
+        ScheduledExecutorService timer = this.timer;
+        if (null != timer) {
+            timer.shutdownNow();
+        }
+        for (RedissonClient master : masters) {
+            master.shutdown();
+        }
+    }
+
+
+    private ScheduledExecutorService timer() {
+        ScheduledExecutorService timer = this.timer;
+        if (null == timer) {
+            synchronized (this) {
+                timer = this.timer;
+                if (null == timer) {
+                    timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "redlock-multi-master-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.timer = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+
+    /**
+     * Complete with the fallback if the master fails or doesn't answer within the node timeout.
+     */
+    private <T> CompletableFuture<T> withTimeout(CompletionStage<T> stage, T fallback) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = timer().schedule(() -> result.complete(fallback), nodeTimeoutMillis, TimeUnit.MILLISECONDS);
+        stage.whenComplete((value, ex) -> {
+            timeout.cancel(false);
+            if (null != ex) {
+                logger.debug("redis master failed, falls back to: {}", fallback, ex);
+            }
+            result.complete(null != ex ? fallback : value);
+        });
+        return result;
+    }
+
+
+    private long validityMillis(long leaseMillis, long elapsedNanos) {
+        long drift = (long) (leaseMillis * clockDriftFactor) + MIN_CLOCK_DRIFT_MILLIS;
+        return leaseMillis - TimeUnit.NANOSECONDS.toMillis(elapsedNanos) - drift;
+    }
+
+
+    private final class MultiMasterLockHandle implements LockHandle {
+
+        private final String key;
+
+        private final LockHandle[] handles;
+
+        private MultiMasterLockHandle(String key, LockHandle[] handles) {
+            this.key = key;
+            this.handles = handles;
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            long threadId = Thread.currentThread().getId();
+            CompletableFuture<Boolean> future = tryLockAsync(waitTime, leaseTime, unit, threadId).toCompletableFuture();
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                future.thenAccept(locked -> {
+                    if (locked) {
+                        unlockAsync(threadId);
+                    }
+                });
+                throw e;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public void unlock() {
+            try {
+                unlockAsync(Thread.currentThread().getId()).toCompletableFuture().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+            long deadline = System.nanoTime() + unit.toNanos(waitTime);
+            long leaseMillis = (leaseTime > 0 ? unit.toMillis(leaseTime) : -1);
+            return attempt(deadline, leaseMillis, ownerId);
+        }
+
+        private CompletableFuture<Boolean> attempt(long deadline, long leaseMillis, long ownerId) {
+            return attemptOnce(leaseMillis, ownerId).thenCompose(locked -> {
+                long remainMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (locked || remainMillis <= 0) {
+                    return CompletableFuture.completedFuture(locked);
+                }
+                long delay = Math.min(remainMillis, ThreadLocalRandom.current().nextLong(1, MAX_RETRY_DELAY_MILLIS + 1));
+                CompletableFuture<Boolean> retry = new CompletableFuture<>();
+                timer().schedule(() -> attempt(deadline, leaseMillis, ownerId).whenComplete((r, ex) -> {
+                    if (null != ex) {
+                        retry.completeExceptionally(ex);
+                    } else {
+                        retry.complete(r);
+                    }
+                }), delay, TimeUnit.MILLISECONDS);
+                return retry;
+            });
+        }
+
+        /**
+         * One round of the Redlock algorithm, completed as soon as the quorum is reached or can't be reached anymore.
+         */
+        private CompletableFuture<Boolean> attemptOnce(long leaseMillis, long ownerId) {
+            long beginTime = System.nanoTime();
+            CompletableFuture<Boolean> decided = new CompletableFuture<>();
+            AtomicInteger granted = new AtomicInteger();
+            AtomicInteger denied = new AtomicInteger();
+            CompletableFuture<?>[] acquires = new CompletableFuture<?>[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                CompletableFuture<Boolean> acquire =
+                        handles[i].tryLockAsync(0, leaseMillis, TimeUnit.MILLISECONDS, ownerId).toCompletableFuture();
+                acquires[i] = acquire;
+                withTimeout(acquire, false).thenAccept(locked -> {
+                    if (locked && granted.incrementAndGet() == quorum) {
+                        decided.complete(true);
+                    } else if (!locked && denied.incrementAndGet() == handles.length - quorum + 1) {
+                        decided.complete(false);
+                    }
+                });
+            }
+            return decided.thenApply(locked -> {
+                if (locked && (leaseMillis < 0 || validityMillis(leaseMillis, System.nanoTime() - beginTime) > 0)) {
+                    return true;
+                }
+                for (int i = 0; i < handles.length; i++) {
+                    LockHandle handle = handles[i];
+                    // released once granted, even by the masters answering after the node timeout
+                    acquires[i].thenAccept(acquired -> {
+                        if (Boolean.TRUE.equals(acquired)) {
+                            handle.unlockAsync(ownerId);
+                        }
+                    });
+                }
+                return false;
+            });
+        }
+
+        @Override
+        public CompletionStage<Void> unlockAsync(long ownerId) {
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                CompletionStage<Boolean> released = handles[i].unlockAsync(ownerId).handle((v, ex) -> {
+                    if (null != ex) {
+                        error.compareAndSet(null, ex instanceof CompletionException ? ex.getCause() : ex);
+                    }
+                    return null == ex;
+                });
+                futures[i] = withTimeout(released, false);
+            }
+            return CompletableFuture.allOf(futures).thenApply(v -> {
+                for (CompletableFuture<?> future : futures) {
+                    if ((Boolean) future.join()) {
+                        return null;
+                    }
+                }
+                // the masters not answering in time are not known to have failed, their leases expire anyway
+                if (null != error.get()) {
+                    throw new CompletionException(error.get());
+                }
+                return null;
+            });
+        }
+
+        @Override
+        public CompletionStage<Long> remainTimeToLiveAsync() {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                futures[i] = withTimeout(handles[i].remainTimeToLiveAsync(), -2L);
+            }
+            return CompletableFuture.allOf(futures).thenApply(v -> {
+                long[] ttls = new long[futures.length];
+                for (int i = 0; i < ttls.length; i++) {
+                    long ttl = (Long) futures[i].join();
+                    ttls[i] = (-1 == ttl ? Long.MAX_VALUE : ttl);
+                }
+                Arrays.sort(ttls);
+                // the lock lives as long as it is held by a quorum of the masters
+                long ttl = ttls[ttls.length - quorum];
+                return (Long.MAX_VALUE == ttl ? -1L : ttl);
+            });
+        }
+
+        @Override
+        public CompletionStage<Boolean> forceUnlockAsync() {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                futures[i] = withTimeout(handles[i].forceUnlockAsync(), false);
+            }
+            return CompletableFuture.allOf(futures).thenApply(v -> {
+                boolean locked = false;
+                for (CompletableFuture<?> future : futures) {
+                    locked |= (Boolean) future.join();
+                }
+                return locked;
+            });
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+}
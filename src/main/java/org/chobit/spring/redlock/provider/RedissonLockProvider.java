@@ -0,0 +1,304 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+import org.redisson.api.RBatch;
+import org.redisson.api.RLock;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RScript;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LockProvider} backed by the Redisson locks.
+ *
+ * <p>The renewals are sent as one {@link RBatch} of scripts, each extending the lease
+ * only while the lock is still held by the same owner.
+ *
+ * @author rui.zhang
+ */
+public class RedissonLockProvider implements LockProvider {
+
+
+    /**
+     * Same as the renewal of Redisson, the timeout keys of the read locks are renewed as well.
+     */
+    private static final String RENEW_SCRIPT =
+            "local counter = redis.call('hget', KEYS[1], ARGV[2]); " +
+                    "if (counter ~= false) then " +
+                    "redis.call('pexpire', KEYS[1], ARGV[1]); " +
+                    "if (redis.call('hlen', KEYS[1]) > 1) then " +
+                    "local keys = redis.call('hkeys', KEYS[1]); " +
+                    "for n, key in ipairs(keys) do " +
+                    "counter = tonumber(redis.call('hget', KEYS[1], key)); " +
+                    "if type(counter) == 'number' then " +
+                    "for i=counter, 1, -1 do " +
+                    "redis.call('pexpire', KEYS[2] .. ':' .. key .. ':rwlock_timeout:' .. i, ARGV[1]); " +
+                    "end; " +
+                    "end; " +
+                    "end; " +
+                    "end; " +
+                    "return 1; " +
+                    "end; " +
+                    "return 0;";
+
+    private final RedissonClient redissonClient;
+
+
+    public RedissonLockProvider(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+
+    public RedissonClient getRedissonClient() {
+        return redissonClient;
+    }
+
+
+    @Override
+    public LockHandle getLock(String key, LockMode mode) {
+        return new RedissonLockHandle(getRLock(key, mode));
+    }
+
+
+    @Override
+    public LockHandle getSemaphore(String key, int permits) {
+        return new RedissonSemaphoreHandle(redissonClient.getPermitExpirableSemaphore(key), permits);
+    }
+
+
+    /**
+     * Get the Redisson lock of the key in the mode.
+     *
+     * @param key  the key of the lock
+     * @param mode the lock mode
+     * @return the Redisson lock
+     */
+    public RLock getRLock(String key, LockMode mode) {
+        switch (mode) {
+            case FAIR:
+                return redissonClient.getFairLock(key);
+            case READ:
+                return redissonClient.getReadWriteLock(key).readLock();
+            case WRITE:
+                return redissonClient.getReadWriteLock(key).writeLock();
+            case SPIN:
+                return redissonClient.getSpinLock(key);
+            case REENTRANT:
+            default:
+                return redissonClient.getLock(key);
+        }
+    }
+
+
+    @Override
+    public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+        RBatch batch = redissonClient.createBatch();
+        RScriptAsync script = batch.getScript(StringCodec.INSTANCE);
+        String lease = String.valueOf(leaseMillis);
+        for (LockLease l : leases) {
+            script.evalAsync(l.getKey(), RScript.Mode.READ_WRITE, RENEW_SCRIPT, RScript.ReturnType.INTEGER,
+                    Arrays.asList(l.getKey(), timeoutPrefix(l.getKey())), lease, ownerField(l.getOwnerId(), l.getMode()));
+        }
+        return batch.executeAsync().thenApply(result -> {
+            List<?> responses = result.getResponses();
+            boolean[] renewed = new boolean[leases.size()];
+            for (int i = 0; i < renewed.length; i++) {
+                Object response = responses.get(i);
+                renewed[i] = !(response instanceof Number) || 0 != ((Number) response).longValue();
+            }
+            return renewed;
+        });
+    }
+
+
+    /**
+     * The hash field of the owner in the Redisson lock of the mode.
+     */
+    private String ownerField(long ownerId, LockMode mode) {
+        String field = redissonClient.getId() + ":" + ownerId;
+        return (LockMode.WRITE == mode ? field + ":write" : field);
+    }
+
+
+    /**
+     * The prefix of the timeout keys of the read locks, in the same slot as the key.
+     */
+    private static String timeoutPrefix(String key) {
+        return (key.contains("{") ? key : "{" + key + "}");
+    }
+
+
+    private static final class RedissonLockHandle implements LockHandle {
+
+        private final RLock lock;
+
+        private RedissonLockHandle(RLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            return lock.tryLock(waitTime, leaseTime, unit);
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+            return lock.tryLockAsync(waitTime, leaseTime, unit, ownerId);
+        }
+
+        @Override
+        public CompletionStage<Void> unlockAsync(long ownerId) {
+            return lock.unlockAsync(ownerId);
+        }
+
+        @Override
+        public CompletionStage<Long> remainTimeToLiveAsync() {
+            return lock.remainTimeToLiveAsync();
+        }
+
+        @Override
+        public CompletionStage<Boolean> forceUnlockAsync() {
+            return lock.forceUnlockAsync();
+        }
+
+        @Override
+        public String toString() {
+            return lock.getName();
+        }
+    }
+
+
+    /**
+     * A permit of a {@link RPermitExpirableSemaphore}, not owned by a thread or an owner id.
+     *
+     * <p>The permits are set up only when a permit can't be acquired at once, so the uncontended
+     * acquire is a single round trip, and at most once per handle. The id of the permit acquired
+     * is kept to release it.
+     */
+    private static final class RedissonSemaphoreHandle implements LockHandle {
+
+        private final RPermitExpirableSemaphore semaphore;
+
+        private final int permits;
+
+        private volatile boolean initialized;
+
+        @Nullable
+        private volatile String permitId;
+
+        private RedissonSemaphoreHandle(RPermitExpirableSemaphore semaphore, int permits) {
+            this.semaphore = semaphore;
+            this.permits = permits;
+        }
+
+        @Override
+        public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+            String id = semaphore.tryAcquire(0, leaseTime, unit);
+            if (null == id && (trySetPermits() || waitTime > 0)) {
+                id = semaphore.tryAcquire(waitTime, leaseTime, unit);
+            }
+            return acquired(id);
+        }
+
+        @Override
+        public void unlock() {
+            String id = this.permitId;
+            if (null == id || !semaphore.tryRelease(id)) {
+                throw notAcquired(id);
+            }
+            this.permitId = null;
+        }
+
+        @Override
+        public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+            return semaphore.tryAcquireAsync(0, leaseTime, unit).thenCompose(id -> {
+                if (null != id) {
+                    return CompletableFuture.completedFuture(id);
+                }
+                return trySetPermitsAsync().thenCompose(set -> (set || waitTime > 0) ?
+                        semaphore.tryAcquireAsync(waitTime, leaseTime, unit) : CompletableFuture.completedFuture(null));
+            }).thenApply(this::acquired);
+        }
+
+        @Override
+        public CompletionStage<Void> unlockAsync(long ownerId) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            String id = this.permitId;
+            if (null == id) {
+                result.completeExceptionally(notAcquired(null));
+                return result;
+            }
+            semaphore.tryReleaseAsync(id).whenComplete((released, ex) -> {
+                if (null != ex) {
+                    result.completeExceptionally(ex);
+                } else if (!released) {
+                    result.completeExceptionally(notAcquired(id));
+                } else {
+                    this.permitId = null;
+                    result.complete(null);
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public CompletionStage<Long> remainTimeToLiveAsync() {
+            return semaphore.remainTimeToLiveAsync();
+        }
+
+        /**
+         * Delete the semaphore, its permits are set up again by the next acquire.
+         */
+        @Override
+        public CompletionStage<Boolean> forceUnlockAsync() {
+            return semaphore.deleteAsync();
+        }
+
+        private boolean trySetPermits() {
+            if (initialized) {
+                return false;
+            }
+            this.initialized = true;
+            return semaphore.trySetPermits(permits);
+        }
+
+        private CompletionStage<Boolean> trySetPermitsAsync() {
+            if (initialized) {
+                return CompletableFuture.completedFuture(false);
+            }
+            this.initialized = true;
+            return semaphore.trySetPermitsAsync(permits);
+        }
+
+        private boolean acquired(@Nullable String id) {
+            if (null == id) {
+                return false;
+            }
+            this.permitId = id;
+            return true;
+        }
+
+        private static IllegalMonitorStateException notAcquired(@Nullable String id) {
+            return new IllegalMonitorStateException("attempt to release permit, not acquired or expired: " + id);
+        }
+
+        @Override
+        public String toString() {
+            return semaphore.getName();
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.chobit.spring.redlock.provider;
+
+import org.redisson.api.RedissonClient;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultStore} keeping the results in Redis buckets, encoded by the codec of the client.
+ *
+ * @author rui.zhang
+ */
+public class RedissonResultStore implements ResultStore {
+
+
+    private final RedissonClient redissonClient;
+
+
+    public RedissonResultStore(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+
+    @Override
+    public CompletionStage<Void> putAsync(String key, Object value, long ttlMillis) {
+        return redissonClient.getBucket(key).setAsync(value, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    @Override
+    public CompletionStage<Object> getAsync(String key) {
+        return redissonClient.getBucket(key).getAsync();
+    }
+
+}
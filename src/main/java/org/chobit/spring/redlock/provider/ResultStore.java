@@ -0,0 +1,34 @@
+package org.chobit.spring.redlock.provider;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 锁的持有者与等待者共享结果的短期存储
+ *
+ * <p>共享结果仅是一种优化：结果不存在、已过期或读写失败时，等待者自行执行方法
+ *
+ * @author rui.zhang
+ */
+public interface ResultStore {
+
+
+    /**
+     * 写入结果
+     *
+     * @param key       结果的Key
+     * @param value     结果
+     * @param ttlMillis 结果的保留时长，单位毫秒
+     * @return 写入结果
+     */
+    CompletionStage<Void> putAsync(String key, Object value, long ttlMillis);
+
+
+    /**
+     * 读取结果
+     *
+     * @param key 结果的Key
+     * @return 结果，不存在或已过期时为null
+     */
+    CompletionStage<Object> getAsync(String key);
+
+}
@@ -0,0 +1,129 @@
+package org.chobit.spring.redlock.routing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Default {@link RedLockKeyRouter}, prefixing, hash tagging and striping the keys.
+ *
+ * <ul>
+ * <li>The prefix of the application is put before every key.</li>
+ * <li>For the operations opting in the hashtag, the namespace of a key, the part before its last {@code ':'},
+ * is wrapped in {@code {}}, e.g. {@code order:7} becomes {@code {order}:7}. The tag of a batch is derived once,
+ * from its first key, and shared by the keys of the same namespace, so that the batch is locked on one node.
+ * The tagged keys of a namespace all share a slot, which is why the other operations are left untagged.
+ * The keys with a hashtag of their own are left as is.</li>
+ * <li>For the operations opting in the stripes, a key with stripes is spread over as many sub-locks,
+ * {@code key#0} to {@code key#n}, in different slots. Each invocation takes one of them at random, so up to
+ * that many invocations of the key run at once: the lock is no longer exclusive.</li>
+ * </ul>
+ *
+ * @author rui.zhang
+ */
+public class DefaultRedLockKeyRouter implements RedLockKeyRouter {
+
+
+    private static final char NAMESPACE_SEPARATOR = ':';
+
+    private static final char STRIPE_SEPARATOR = '#';
+
+    private final String prefix;
+
+    /**
+     * The prefixes of the striped keys, the longest first
+     */
+    private final String[] stripedPrefixes;
+
+    private final int[] stripes;
+
+
+    /**
+     * @param prefix  the prefix of every key, empty for none
+     * @param stripes the number of sub-locks of the keys starting with each prefix, for the striped operations
+     */
+    public DefaultRedLockKeyRouter(String prefix, Map<String, Integer> stripes) {
+        if (prefix.indexOf('{') >= 0 || prefix.indexOf('}') >= 0) {
+            throw new IllegalArgumentException("The key prefix must not contain a hashtag: " + prefix);
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(stripes.entrySet());
+        entries.sort(Comparator.comparingInt((Map.Entry<String, Integer> e) -> e.getKey().length()).reversed());
+        this.prefix = prefix;
+        this.stripedPrefixes = new String[entries.size()];
+        this.stripes = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<String, Integer> e = entries.get(i);
+            if (null == e.getValue() || e.getValue() < 1) {
+                throw new IllegalArgumentException("The stripes of the keys '" + e.getKey() + "' must be positive: " + e.getValue());
+            }
+            this.stripedPrefixes[i] = e.getKey();
+            this.stripes[i] = e.getValue();
+        }
+    }
+
+
+    @Override
+    public String route(String key, boolean hashtag, boolean striped) {
+        String routed = key;
+        int n = (striped ? stripesOf(key) : 1);
+        if (n > 1) {
+            routed = key + STRIPE_SEPARATOR + ThreadLocalRandom.current().nextInt(n);
+        } else if (hashtag) {
+            int separator = namespaceOf(key);
+            if (separator > 0) {
+                routed = '{' + key.substring(0, separator) + '}' + key.substring(separator);
+            }
+        }
+        return prefix.isEmpty() ? routed : prefix + routed;
+    }
+
+
+    @Override
+    public String[] route(String[] keys, boolean hashtag) {
+        String[] routed = new String[keys.length];
+        String namespace = null;
+        String tag = null;
+        if (hashtag) {
+            int separator = namespaceOf(keys[0]);
+            if (separator > 0) {
+                namespace = keys[0].substring(0, separator + 1);
+                tag = prefix + '{' + keys[0].substring(0, separator) + '}';
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            // a key is tagged with its own namespace, the same in every batch, whatever the other keys
+            if (null != tag && namespaceOf(key) == namespace.length() - 1 && key.startsWith(namespace)) {
+                routed[i] = tag + key.substring(namespace.length() - 1);
+            } else if (hashtag) {
+                // keys of several namespaces, tagged one by one and sorted again
+                return RedLockKeyRouter.super.route(keys, true);
+            } else {
+                routed[i] = prefix.isEmpty() ? key : prefix + key;
+            }
+        }
+        return routed;
+    }
+
+
+    private int stripesOf(String key) {
+        for (int i = 0; i < stripedPrefixes.length; i++) {
+            if (key.startsWith(stripedPrefixes[i])) {
+                return stripes[i];
+            }
+        }
+        return 1;
+    }
+
+
+    /**
+     * The index of the separator ending the namespace of a key, not positive if the key has no namespace
+     * or a hashtag of its own.
+     */
+    private static int namespaceOf(String key) {
+        return key.indexOf('{') >= 0 ? -1 : key.lastIndexOf(NAMESPACE_SEPARATOR);
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.chobit.spring.redlock.routing;
+
+import java.util.TreeSet;
+
+/**
+ * 将RedLock操作生成的Key路由为锁的Key
+ *
+ * <p>Key表达式求值后，对每个锁定的Key进行路由，以便将Key分布于Redis Cluster的各slot；同一Key每次需路由为同一把锁，
+ * 否则其调用不再互斥。hashtag与子锁由各操作开启，见{@code RedLock#hashtag()}与{@code RedLock#striped()}
+ *
+ * @author rui.zhang
+ */
+public interface RedLockKeyRouter {
+
+
+    /**
+     * 路由Key
+     *
+     * @param key     由Key表达式生成的Key
+     * @param hashtag 操作是否开启了hashtag
+     * @param striped 操作是否允许拆分子锁
+     * @return 锁的Key
+     */
+    String route(String key, boolean hashtag, boolean striped);
+
+
+    /**
+     * 路由批量锁定的Key，批量锁定的Key不拆分子锁
+     *
+     * @param keys    由Key表达式生成的Key，已排序去重
+     * @param hashtag 操作是否开启了hashtag
+     * @return 锁的Key，需排序去重
+     */
+    default String[] route(String[] keys, boolean hashtag) {
+        TreeSet<String> routed = new TreeSet<>();
+        for (String key : keys) {
+            routed.add(route(key, hashtag, false));
+        }
+        return routed.toArray(new String[0]);
+    }
+
+}
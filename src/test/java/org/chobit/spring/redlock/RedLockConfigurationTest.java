@@ -0,0 +1,157 @@
+package org.chobit.spring.redlock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.chobit.spring.redlock.actuate.RedLocksEndpoint;
+import org.chobit.spring.redlock.interceptor.RedLockOptions;
+import org.chobit.spring.redlock.interceptor.RedLockTemplate;
+import org.chobit.spring.redlock.metrics.MicrometerRedLockMetrics;
+import org.chobit.spring.redlock.metrics.RedLockMetrics;
+import org.chobit.spring.redlock.observation.MicrometerRedLockObservations;
+import org.chobit.spring.redlock.observation.RedLockObservations;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the beans registered by {@link EnableRedLock}, on the in-memory locks so that no Redis is needed.
+ *
+ * @author rui.zhang
+ */
+class RedLockConfigurationTest {
+
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(RedLockApplication.class)
+            .withPropertyValues("redlock.provider=in-memory");
+
+
+    @Test
+    void registersMetricsWithMeterRegistry() {
+        contextRunner.withUserConfiguration(MeterRegistryConfiguration.class).run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).getBean(RedLockMetrics.class).isInstanceOf(MicrometerRedLockMetrics.class);
+        });
+    }
+
+
+    @Test
+    void registersRenewalMetersOnce() {
+        contextRunner.withUserConfiguration(MeterRegistryConfiguration.class).run(context -> {
+            RedLockMetrics metrics = context.getBean(RedLockMetrics.class);
+            metrics.renewed(TimeUnit.MILLISECONDS.toNanos(5));
+            metrics.renewed(TimeUnit.MILLISECONDS.toNanos(7));
+            metrics.leaseLost();
+
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            assertThat(registry.get("redlock.renewal.lag").timers()).hasSize(1);
+            assertThat(registry.get("redlock.renewal.lag").timer().count()).isEqualTo(2);
+            assertThat(registry.get("redlock.renewal.lost").counter().count()).isEqualTo(1);
+        });
+    }
+
+
+    @Test
+    void observesOperationsWithObservationRegistry() {
+        contextRunner.withUserConfiguration(ObservationRegistryConfiguration.class).run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).getBean(RedLockObservations.class).isInstanceOf(MicrometerRedLockObservations.class);
+
+            RedLockOptions options = RedLockOptions.builder("observed").build();
+            assertThat(context.getBean(RedLockTemplate.class).execute("observed:1", options, () -> 1)).isEqualTo(1);
+
+            assertThat(context.getBean(RecordingHandler.class).stopped)
+                    .containsExactly("redlock.acquire", "redlock.hold", "redlock");
+        });
+    }
+
+
+    @Test
+    void registersNoMetricsWhenDisabled() {
+        contextRunner.withUserConfiguration(MeterRegistryConfiguration.class)
+                .withPropertyValues("redlock.metrics.enabled=false")
+                .run(context -> assertThat(context).doesNotHaveBean(RedLockMetrics.class));
+    }
+
+
+    @Test
+    void registersEndpointWithActuator() {
+        contextRunner.run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).hasSingleBean(RedLocksEndpoint.class);
+            assertThat(context.getBean(RedLocksEndpoint.class).redLocks().getLocks()).isEmpty();
+        });
+    }
+
+
+    @Test
+    void registersNoEndpointWithoutActuator() {
+        contextRunner.withClassLoader(new FilteredClassLoader(Endpoint.class))
+                .run(context -> {
+                    assertThat(context).hasNotFailed();
+                    assertThat(context).doesNotHaveBean(RedLocksEndpoint.class);
+                });
+    }
+
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableRedLock
+    static class RedLockApplication {
+    }
+
+
+    @Configuration(proxyBeanMethods = false)
+    static class MeterRegistryConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+
+    @Configuration(proxyBeanMethods = false)
+    static class ObservationRegistryConfiguration {
+
+        @Bean
+        RecordingHandler recordingHandler() {
+            return new RecordingHandler();
+        }
+
+        @Bean
+        ObservationRegistry observationRegistry(RecordingHandler recordingHandler) {
+            ObservationRegistry registry = ObservationRegistry.create();
+            registry.observationConfig().observationHandler(recordingHandler);
+            return registry;
+        }
+    }
+
+
+    static class RecordingHandler implements ObservationHandler<Observation.Context> {
+
+        private final List<String> stopped = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onStop(Observation.Context context) {
+            stopped.add(context.getName());
+        }
+
+        @Override
+        public boolean supportsContext(Observation.Context context) {
+            return true;
+        }
+    }
+
+}
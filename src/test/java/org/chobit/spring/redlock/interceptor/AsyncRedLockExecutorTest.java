@@ -0,0 +1,258 @@
+package org.chobit.spring.redlock.interceptor;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.observation.MicrometerRedLockObservations;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ClassUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.micrometer.observation.tck.TestObservationRegistryAssert.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the threads the asynchronous operations are invoked on, the lock being handed over by
+ * a thread standing for the Redis client, and of their observations.
+ *
+ * @author rui.zhang
+ */
+class AsyncRedLockExecutorTest {
+
+
+    private static final RedLockOptions OPTIONS = RedLockOptions.builder("async").waitTime(5).leaseTime(10).build();
+
+    private static final long HOLDER = RedLockOwnerIds.next();
+
+    private final InMemoryLockProvider lockProvider = new InMemoryLockProvider();
+
+    private final ExecutorService asyncExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "redlock-async"));
+
+    private final TestObservationRegistry observationRegistry = TestObservationRegistry.create();
+
+    private RedLockInterceptor interceptor;
+
+
+    @BeforeEach
+    void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("observationRegistry", observationRegistry);
+        interceptor = new RedLockInterceptor();
+        interceptor.setBeanFactory(beanFactory);
+        interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        interceptor.setLockProvider(lockProvider);
+        interceptor.setRedLockObservations(new MicrometerRedLockObservations(beanFactory.getBeanProvider(ObservationRegistry.class)));
+        interceptor.setAsyncExecutor(asyncExecutor);
+        interceptor.afterPropertiesSet();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        interceptor.destroy();
+        asyncExecutor.shutdownNow();
+        lockProvider.shutdown();
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invokesFutureOnExecutorOnceLockHandedOver() throws Throwable {
+        hold("future:1");
+        CompletableFuture<String> result = (CompletableFuture<String>) interceptor.execute(
+                AsyncRedLockExecutorTest::currentThread, metadata("future"), "future:1");
+
+        releaseOnClientThread("future:1");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("redlock-async");
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invokesFutureOnCallerWhenLockAcquiredAtOnce() throws Throwable {
+        CompletableFuture<String> result = (CompletableFuture<String>) interceptor.execute(
+                AsyncRedLockExecutorTest::currentThread, metadata("future"), "future:2");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(Thread.currentThread().getName());
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invokesMonoOnExecutorOnceLockHandedOver() throws Throwable {
+        hold("mono:1");
+        Mono<String> mono = (Mono<String>) interceptor.execute(
+                () -> Mono.fromSupplier(() -> Thread.currentThread().getName()), metadata("mono"), "mono:1");
+        Future<String> result = mono.toFuture();
+
+        releaseOnClientThread("mono:1");
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("redlock-async");
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releasesLockGrantedAfterCancel() throws Throwable {
+        hold("mono:4");
+        AtomicBoolean invoked = new AtomicBoolean();
+        Mono<String> mono = (Mono<String>) interceptor.execute(
+                () -> Mono.fromSupplier(() -> String.valueOf(invoked.getAndSet(true))), metadata("mono"), "mono:4");
+        Disposable subscription = mono.subscribe();
+
+        subscription.dispose();
+        releaseOnClientThread("mono:4");
+
+        boolean locked = lockProvider.getLock("mono:4", LockMode.REENTRANT, 1)
+                .tryLockAsync(5, 10, TimeUnit.SECONDS, RedLockOwnerIds.next()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertThat(locked).isTrue();
+        assertThat(invoked).isFalse();
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releasesLockGrantedBeforeCancelButNotDelivered() throws Throwable {
+        hold("mono:5");
+        AtomicBoolean invoked = new AtomicBoolean();
+        Mono<String> mono = (Mono<String>) interceptor.execute(
+                () -> Mono.fromSupplier(() -> String.valueOf(invoked.getAndSet(true))), metadata("mono"), "mono:5");
+        Disposable subscription = mono.subscribe();
+        CountDownLatch busy = new CountDownLatch(1);
+        asyncExecutor.execute(() -> awaitQuietly(busy));
+
+        // the lock is granted, its delivery is queued behind the busy executor when the subscriber cancels
+        releaseOnClientThread("mono:5");
+        subscription.dispose();
+        busy.countDown();
+
+        boolean locked = lockProvider.getLock("mono:5", LockMode.REENTRANT, 1)
+                .tryLockAsync(5, 10, TimeUnit.SECONDS, RedLockOwnerIds.next()).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertThat(locked).isTrue();
+        assertThat(invoked).isFalse();
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void observesFutureFromAcquireToRelease() throws Throwable {
+        hold("future:3");
+        CompletableFuture<String> result = (CompletableFuture<String>) interceptor.execute(
+                AsyncRedLockExecutorTest::currentThread, metadata("future"), "future:3");
+
+        assertThat(observationRegistry).hasObservationWithNameEqualTo("redlock.acquire").that()
+                .hasBeenStarted().isNotStopped();
+
+        releaseOnClientThread("future:3");
+        result.get(5, TimeUnit.SECONDS);
+
+        assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("redlock.acquire").that()
+                .hasBeenStopped().hasLowCardinalityKeyValue("redlock.outcome", "acquired")
+                .backToTestObservationRegistry()
+                .hasObservationWithNameEqualTo("redlock.hold").that()
+                .hasBeenStopped().hasParentObservation()
+                .backToTestObservationRegistry()
+                .hasObservationWithNameEqualTo("redlock").that()
+                .hasBeenStopped().hasHighCardinalityKeyValue("redlock.round.trips", "2");
+        assertThat(observationRegistry.getCurrentObservation()).isNull();
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void observesMonoErrorOnRelease() throws Throwable {
+        IllegalStateException error = new IllegalStateException("mono");
+        Mono<String> mono = (Mono<String>) interceptor.execute(() -> Mono.error(error), metadata("mono"), "mono:2");
+
+        assertThatThrownBy(mono::block).isSameAs(error);
+
+        assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("redlock.hold").that()
+                .hasBeenStopped().hasError(error)
+                .backToTestObservationRegistry()
+                .hasObservationWithNameEqualTo("redlock").that()
+                .hasBeenStopped().hasError(error);
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void observesMonoTimeout() throws Throwable {
+        hold("mono:3");
+        RedLockAspectSupport.RedLockOperationMetadata metadata = interceptor.createRedLockOperationMetadata(
+                RedLockOptions.builder("async").leaseTime(10).build().getOperation(), ClassUtils.getMethod(AsyncOperations.class, "mono"));
+        Mono<String> mono = (Mono<String>) interceptor.execute(() -> Mono.just("locked"), metadata, "mono:3");
+
+        assertThatThrownBy(mono::block).hasMessageContaining("mono:3");
+
+        assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("redlock.acquire").that()
+                .hasBeenStopped().hasLowCardinalityKeyValue("redlock.outcome", "timeout")
+                .backToTestObservationRegistry()
+                .hasNumberOfObservationsWithNameEqualTo("redlock.hold", 0)
+                .hasObservationWithNameEqualTo("redlock").that()
+                .hasBeenStopped().hasHighCardinalityKeyValue("redlock.round.trips", "1");
+    }
+
+
+    private RedLockAspectSupport.RedLockOperationMetadata metadata(String methodName) {
+        return interceptor.createRedLockOperationMetadata(OPTIONS.getOperation(),
+                ClassUtils.getMethod(AsyncOperations.class, methodName));
+    }
+
+
+    private void hold(String key) throws Exception {
+        boolean locked = lockProvider.getLock(key, LockMode.REENTRANT, 1)
+                .tryLockAsync(0, 10, TimeUnit.SECONDS, HOLDER).toCompletableFuture().get();
+        assertThat(locked).isTrue();
+    }
+
+
+    /**
+     * The waiters of the in-memory locks are granted the lock on the thread releasing it.
+     */
+    private void releaseOnClientThread(String key) throws InterruptedException {
+        Thread client = new Thread(() -> lockProvider.getLock(key, LockMode.REENTRANT, 1).unlockAsync(HOLDER), "redis-io");
+        client.start();
+        client.join();
+    }
+
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static CompletableFuture<String> currentThread() {
+        return CompletableFuture.completedFuture(Thread.currentThread().getName());
+    }
+
+
+    interface AsyncOperations {
+
+        CompletableFuture<String> future();
+
+        Mono<String> mono();
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockLease;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the keys recorded held while their time to live is asked, the answers being completed by hand.
+ *
+ * @author rui.zhang
+ */
+class HeldKeyCacheTest {
+
+
+    private final DeferredTtlLockProvider lockProvider = new DeferredTtlLockProvider();
+
+    private final HeldKeyCache cache = new HeldKeyCache(lockProvider, 16, 1000);
+
+
+    @AfterEach
+    void tearDown() {
+        lockProvider.delegate.shutdown();
+    }
+
+
+    @Test
+    void recordsKeyOnceTtlKnown() {
+        cache.held("stock:1", LockMode.REENTRANT);
+        assertThat(cache.isHeld("stock:1")).isFalse();
+
+        lockProvider.answer(500L);
+
+        assertThat(cache.isHeld("stock:1")).isTrue();
+    }
+
+
+    @Test
+    void dropsTtlAnsweredAfterRelease() {
+        cache.held("stock:2", LockMode.REENTRANT);
+
+        cache.released("stock:2");
+        lockProvider.answer(500L);
+
+        assertThat(cache.isHeld("stock:2")).isFalse();
+    }
+
+
+    @Test
+    void dropsTtlAnsweredAfterAcquire() {
+        cache.held("stock:3", LockMode.REENTRANT);
+
+        cache.acquired("stock:3");
+        lockProvider.answer(500L);
+
+        assertThat(cache.isHeld("stock:3")).isFalse();
+    }
+
+
+    @Test
+    void asksTtlOnceForConcurrentFailures() {
+        cache.held("stock:4", LockMode.REENTRANT);
+        cache.held("stock:4", LockMode.REENTRANT);
+        cache.held("stock:4", LockMode.REENTRANT);
+
+        assertThat(lockProvider.pending).hasSize(1);
+        lockProvider.answer(500L);
+        cache.held("stock:4", LockMode.REENTRANT);
+
+        assertThat(lockProvider.pending).isEmpty();
+        assertThat(cache.isHeld("stock:4")).isTrue();
+    }
+
+
+    @Test
+    void asksAgainOnceReleasedElsewhere() {
+        cache.held("stock:5", LockMode.REENTRANT);
+        lockProvider.answer(-2L);
+        assertThat(cache.isHeld("stock:5")).isFalse();
+
+        cache.held("stock:5", LockMode.REENTRANT);
+
+        assertThat(lockProvider.pending).hasSize(1);
+    }
+
+
+    /**
+     * In-memory locks whose time to live is answered by the test.
+     */
+    private static final class DeferredTtlLockProvider implements LockProvider {
+
+        private final InMemoryLockProvider delegate = new InMemoryLockProvider();
+
+        private final Deque<CompletableFuture<Long>> pending = new ArrayDeque<>();
+
+        void answer(Long pttl) {
+            pending.removeFirst().complete(pttl);
+        }
+
+        @Override
+        public LockHandle getLock(String key, LockMode mode) {
+            LockHandle lock = delegate.getLock(key, mode);
+            return new LockHandle() {
+                @Override
+                public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+                    return lock.tryLock(waitTime, leaseTime, unit);
+                }
+
+                @Override
+                public void unlock() {
+                    lock.unlock();
+                }
+
+                @Override
+                public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+                    return lock.tryLockAsync(waitTime, leaseTime, unit, ownerId);
+                }
+
+                @Override
+                public CompletionStage<Void> unlockAsync(long ownerId) {
+                    return lock.unlockAsync(ownerId);
+                }
+
+                @Override
+                public CompletionStage<Long> remainTimeToLiveAsync() {
+                    CompletableFuture<Long> pttl = new CompletableFuture<>();
+                    pending.addLast(pttl);
+                    return pttl;
+                }
+
+                @Override
+                public CompletionStage<Boolean> forceUnlockAsync() {
+                    return lock.forceUnlockAsync();
+                }
+            };
+        }
+
+        @Override
+        public LockHandle getSemaphore(String key, int permits) {
+            return delegate.getSemaphore(key, permits);
+        }
+
+        @Override
+        public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+            return delegate.renewAsync(leases, leaseMillis);
+        }
+    }
+
+}
@@ -0,0 +1,381 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RLock;
+import org.redisson.api.RScriptAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory stand-in of {@link RedissonClient} used to run the tests and the benchmarks offline.
+ *
+ * <p>Only the lock related methods are supported, the locks follow the Redisson semantics:
+ * reentrant by owner id, released automatically once the lease expired. Batches only support
+ * the lease renewal script of {@link org.chobit.spring.redlock.provider.RedissonLockProvider}.
+ *
+ * @author rui.zhang
+ */
+public final class InMemoryRedissonClient implements InvocationHandler {
+
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "in-memory-redisson-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final Map<String, LockState> locks = new ConcurrentHashMap<>(1024);
+
+
+    private InMemoryRedissonClient() {
+    }
+
+
+    public static RedissonClient create() {
+        return (RedissonClient) Proxy.newProxyInstance(InMemoryRedissonClient.class.getClassLoader(),
+                new Class<?>[]{RedissonClient.class}, new InMemoryRedissonClient());
+    }
+
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getLock":
+            case "getFairLock":
+            case "getSpinLock":
+                return lock((String) args[0]);
+            case "createBatch":
+                return Proxy.newProxyInstance(InMemoryRedissonClient.class.getClassLoader(),
+                        new Class<?>[]{RBatch.class}, new BatchHandler());
+            case "getId":
+                return id;
+            case "isShutdown":
+            case "isShuttingDown":
+                return false;
+            case "shutdown":
+                return null;
+            case "toString":
+                return "InMemoryRedissonClient@" + id;
+            case "hashCode":
+                return id.hashCode();
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+
+    private RLock lock(String name) {
+        LockState state = locks.computeIfAbsent(name, LockState::new);
+        return (RLock) Proxy.newProxyInstance(InMemoryRedissonClient.class.getClassLoader(),
+                new Class<?>[]{RLock.class}, new LockHandler(state));
+    }
+
+
+    /**
+     * Batch of lease renewals, each renews the lock held by the owner in the hash field.
+     */
+    private final class BatchHandler implements InvocationHandler {
+
+        private final List<Object[]> renewals = new ArrayList<>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getScript":
+                    return Proxy.newProxyInstance(InMemoryRedissonClient.class.getClassLoader(),
+                            new Class<?>[]{RScriptAsync.class}, (p, m, a) -> {
+                                if (!"evalAsync".equals(m.getName()) || 6 != a.length) {
+                                    throw new UnsupportedOperationException(m.getName());
+                                }
+                                renewals.add(new Object[]{a[0], a[5]});
+                                return new CompletableFutureWrapper<>(new CompletableFuture<>());
+                            });
+                case "executeAsync":
+                    List<Object> responses = new ArrayList<>(renewals.size());
+                    for (Object[] renewal : renewals) {
+                        Object[] values = (Object[]) renewal[1];
+                        long owner = Long.parseLong(((String) values[1]).substring(id.length() + 1));
+                        LockState state = locks.computeIfAbsent((String) renewal[0], LockState::new);
+                        long leaseNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong((String) values[0]));
+                        responses.add(state.renew(owner, leaseNanos) ? 1L : 0L);
+                    }
+                    return new CompletableFutureWrapper<>(new BatchResult<>(responses, 0));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+
+    private static final class LockHandler implements InvocationHandler {
+
+        private final LockState state;
+
+        private LockHandler(LockState state) {
+            this.state = state;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Class<?>[] types = method.getParameterTypes();
+            long current = Thread.currentThread().getId();
+            switch (method.getName()) {
+                case "getName":
+                    return state.name;
+                case "tryLock":
+                    return tryLock(types, args, current);
+                case "tryLockAsync":
+                    long owner = (4 == types.length ? (Long) args[3] : current);
+                    return new CompletableFutureWrapper<>(tryLockAsync(types, args, owner));
+                case "lock":
+                    state.tryLock(Long.MAX_VALUE, leaseOf(types, args), current);
+                    return null;
+                case "unlock":
+                    state.unlock(current);
+                    return null;
+                case "unlockAsync":
+                    try {
+                        state.unlock(0 == types.length ? current : (Long) args[0]);
+                        return new CompletableFutureWrapper<>((Void) null);
+                    } catch (IllegalMonitorStateException e) {
+                        return new CompletableFutureWrapper<Void>((Throwable) e);
+                    }
+                case "forceUnlock":
+                    return state.forceUnlock();
+                case "forceUnlockAsync":
+                    return new CompletableFutureWrapper<>(state.forceUnlock());
+                case "isLocked":
+                    return state.isLocked();
+                case "isHeldByCurrentThread":
+                    return state.isHeldBy(current);
+                case "isHeldByThread":
+                    return state.isHeldBy((Long) args[0]);
+                case "remainTimeToLive":
+                    return state.remainTimeToLive();
+                case "remainTimeToLiveAsync":
+                    return new CompletableFutureWrapper<>(state.remainTimeToLive());
+                case "toString":
+                    return "InMemoryLock@" + state.name;
+                case "hashCode":
+                    return state.hashCode();
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private boolean tryLock(Class<?>[] types, Object[] args, long owner) throws InterruptedException {
+            if (0 == types.length) {
+                return state.tryLock(0, -1, owner);
+            }
+            if (2 == types.length) {
+                return state.tryLock(((TimeUnit) args[1]).toNanos((Long) args[0]), -1, owner);
+            }
+            TimeUnit unit = (TimeUnit) args[2];
+            return state.tryLock(unit.toNanos((Long) args[0]), unit.toNanos((Long) args[1]), owner);
+        }
+
+        private CompletableFuture<Boolean> tryLockAsync(Class<?>[] types, Object[] args, long owner) {
+            if (0 == types.length) {
+                return state.tryLockAsync(0, -1, owner);
+            }
+            if (2 == types.length) {
+                return state.tryLockAsync(((TimeUnit) args[1]).toNanos((Long) args[0]), -1, owner);
+            }
+            TimeUnit unit = (TimeUnit) args[2];
+            return state.tryLockAsync(unit.toNanos((Long) args[0]), unit.toNanos((Long) args[1]), owner);
+        }
+
+        private long leaseOf(Class<?>[] types, Object[] args) {
+            return 2 == types.length ? ((TimeUnit) args[1]).toNanos((Long) args[0]) : -1;
+        }
+    }
+
+
+    /**
+     * State of a lock. Blocking acquires wait on the monitor, like a blocking client would,
+     * asynchronous acquires are queued and completed on release, like pub/sub wake ups.
+     */
+    private static final class LockState {
+
+        private final String name;
+
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+        private long owner;
+
+        private int holds;
+
+        private long expireAt;
+
+        private LockState(String name) {
+            this.name = name;
+        }
+
+        synchronized boolean tryLock(long waitNanos, long leaseNanos, long ownerId) throws InterruptedException {
+            long deadline = System.nanoTime() + waitNanos;
+            while (true) {
+                long now = System.nanoTime();
+                if (tryAcquire(now, leaseNanos, ownerId)) {
+                    return true;
+                }
+                if (deadline - now <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, Math.min(deadline - now, expireAt - now));
+            }
+        }
+
+        CompletableFuture<Boolean> tryLockAsync(long waitNanos, long leaseNanos, long ownerId) {
+            Waiter waiter;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (tryAcquire(now, leaseNanos, ownerId)) {
+                    return CompletableFuture.completedFuture(true);
+                }
+                if (waitNanos <= 0) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                waiter = new Waiter(ownerId, leaseNanos, now + waitNanos);
+                waiters.add(waiter);
+            }
+            schedule(waiter);
+            return waiter.future;
+        }
+
+        void unlock(long ownerId) {
+            Waiter next = null;
+            synchronized (this) {
+                if (0 == holds || ownerId != owner || System.nanoTime() - expireAt > 0) {
+                    throw new IllegalMonitorStateException("attempt to unlock lock, not locked by current owner: " + ownerId);
+                }
+                if (--holds == 0) {
+                    this.owner = 0;
+                    next = waiters.poll();
+                    if (null != next) {
+                        tryAcquire(System.nanoTime(), next.leaseNanos, next.ownerId);
+                    }
+                    notifyAll();
+                }
+            }
+            if (null != next) {
+                next.future.complete(true);
+            }
+        }
+
+        synchronized boolean forceUnlock() {
+            boolean locked = isLocked();
+            this.holds = 0;
+            this.owner = 0;
+            notifyAll();
+            return locked;
+        }
+
+        synchronized boolean renew(long ownerId, long leaseNanos) {
+            if (!isHeldBy(ownerId)) {
+                return false;
+            }
+            this.expireAt = System.nanoTime() + leaseNanos;
+            return true;
+        }
+
+        synchronized boolean isLocked() {
+            return 0 != holds && System.nanoTime() - expireAt <= 0;
+        }
+
+        synchronized boolean isHeldBy(long ownerId) {
+            return isLocked() && ownerId == owner;
+        }
+
+        synchronized long remainTimeToLive() {
+            return isLocked() ? TimeUnit.NANOSECONDS.toMillis(expireAt - System.nanoTime()) : -2;
+        }
+
+        private boolean tryAcquire(long now, long leaseNanos, long ownerId) {
+            if (0 == holds || now - expireAt > 0) {
+                this.owner = ownerId;
+                this.holds = 1;
+            } else if (ownerId == owner) {
+                this.holds++;
+            } else {
+                return false;
+            }
+            this.expireAt = (leaseNanos > 0 ? now + leaseNanos : now + TimeUnit.DAYS.toNanos(365));
+            return true;
+        }
+
+        /**
+         * Check the waiter again once its wait time or the lease of the holder is over.
+         */
+        private void schedule(Waiter waiter) {
+            long delay;
+            synchronized (this) {
+                delay = Math.min(waiter.deadline, expireAt) - System.nanoTime();
+            }
+            TIMER.schedule(() -> check(waiter), Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+
+        private void check(Waiter waiter) {
+            Boolean result = null;
+            synchronized (this) {
+                if (!waiters.contains(waiter)) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (tryAcquire(now, waiter.leaseNanos, waiter.ownerId)) {
+                    result = true;
+                } else if (now - waiter.deadline >= 0) {
+                    result = false;
+                }
+                if (null != result) {
+                    waiters.remove(waiter);
+                }
+            }
+            if (null == result) {
+                schedule(waiter);
+            } else {
+                waiter.future.complete(result);
+            }
+        }
+    }
+
+
+    private static final class Waiter {
+
+        private final long ownerId;
+
+        private final long leaseNanos;
+
+        private final long deadline;
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private Waiter(long ownerId, long leaseNanos, long deadline) {
+            this.ownerId = ownerId;
+            this.leaseNanos = leaseNanos;
+            this.deadline = deadline;
+        }
+    }
+
+}
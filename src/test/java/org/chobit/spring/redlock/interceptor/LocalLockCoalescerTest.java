@@ -0,0 +1,179 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockLease;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.chobit.spring.redlock.provider.RedissonLockProvider;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the hand-off of the distributed lock between the local waiters, over the in-memory Redisson client.
+ *
+ * @author rui.zhang
+ */
+class LocalLockCoalescerTest {
+
+
+    private final RedissonClient client = InMemoryRedissonClient.create();
+
+    private final CountingLockProvider lockProvider = new CountingLockProvider(new RedissonLockProvider(client));
+
+    private final LocalLockCoalescer coalescer = new LocalLockCoalescer(lockProvider);
+
+
+    @Test
+    void handsOnLockWithinLease() throws Exception {
+        LocalLockCoalescer.Entry first = coalescer.tryLock("coalesced", 0, 10_000, TimeUnit.MILLISECONDS);
+        assertThat(first).isNotNull();
+        long ownerId = first.ownerId();
+
+        Successor successor = handOffTo("coalesced");
+        coalescer.unlock(first, true);
+        successor.await();
+
+        assertThat(successor.ownerId).as("the same owner renewed").isEqualTo(ownerId);
+        assertThat(client.getLock("coalesced").isLocked()).isFalse();
+        assertThat(lockProvider.unlocks.get()).isEqualTo(1);
+        assertThat(lockProvider.failedUnlocks.get()).isZero();
+    }
+
+
+    @Test
+    void acquiresAfreshOnceLeaseExpiredDuringHandOff() throws Exception {
+        LocalLockCoalescer.Entry first = coalescer.tryLock("expired", 0, 50, TimeUnit.MILLISECONDS);
+        assertThat(first).isNotNull();
+        long ownerId = first.ownerId();
+
+        Successor successor = handOffTo("expired");
+        // the successor is queued locally and the lease expires meanwhile
+        Thread.sleep(100);
+        coalescer.unlock(first, true);
+        successor.await();
+
+        assertThat(successor.ownerId).as("a fresh grant").isNotEqualTo(ownerId).isNotZero();
+        assertThat(client.getLock("expired").isLocked()).isFalse();
+        assertThat(lockProvider.unlocks.get()).isEqualTo(1);
+        assertThat(lockProvider.failedUnlocks.get()).isZero();
+    }
+
+
+    /**
+     * Start a thread waiting for the lock of the key, queued on the local lock once returned.
+     */
+    private Successor handOffTo(String key) throws InterruptedException {
+        Successor successor = new Successor(key);
+        successor.start();
+        Thread.sleep(20);
+        return successor;
+    }
+
+
+    /**
+     * A local waiter recording the owner id it is handed, then releasing the lock.
+     */
+    private final class Successor extends Thread {
+
+        private final String key;
+
+        private volatile long ownerId;
+
+        private Successor(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            try {
+                LocalLockCoalescer.Entry entry = coalescer.tryLock(key, 5_000, 10_000, TimeUnit.MILLISECONDS);
+                if (null != entry) {
+                    this.ownerId = entry.ownerId();
+                    coalescer.unlock(entry, true);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void await() throws InterruptedException {
+            join(5_000);
+        }
+    }
+
+
+    /**
+     * Counts the unlocks sent to the backend, and the ones failing.
+     */
+    private static final class CountingLockProvider implements LockProvider {
+
+        private final LockProvider delegate;
+
+        private final AtomicInteger unlocks = new AtomicInteger();
+
+        private final AtomicInteger failedUnlocks = new AtomicInteger();
+
+        private CountingLockProvider(LockProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public LockHandle getLock(String key, LockMode mode) {
+            LockHandle lock = delegate.getLock(key, mode);
+            return new LockHandle() {
+                @Override
+                public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+                    return lock.tryLock(waitTime, leaseTime, unit);
+                }
+
+                @Override
+                public void unlock() {
+                    lock.unlock();
+                }
+
+                @Override
+                public CompletionStage<Boolean> tryLockAsync(long waitTime, long leaseTime, TimeUnit unit, long ownerId) {
+                    return lock.tryLockAsync(waitTime, leaseTime, unit, ownerId);
+                }
+
+                @Override
+                public CompletionStage<Void> unlockAsync(long ownerId) {
+                    unlocks.incrementAndGet();
+                    return lock.unlockAsync(ownerId).whenComplete((v, ex) -> {
+                        if (null != ex) {
+                            failedUnlocks.incrementAndGet();
+                        }
+                    });
+                }
+
+                @Override
+                public CompletionStage<Long> remainTimeToLiveAsync() {
+                    return lock.remainTimeToLiveAsync();
+                }
+
+                @Override
+                public CompletionStage<Boolean> forceUnlockAsync() {
+                    return lock.forceUnlockAsync();
+                }
+            };
+        }
+
+        @Override
+        public LockHandle getSemaphore(String key, int permits) {
+            return delegate.getSemaphore(key, permits);
+        }
+
+        @Override
+        public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+            return delegate.renewAsync(leases, leaseMillis);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.chobit.spring.redlock.interceptor;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.RedLock;
+import org.chobit.spring.redlock.exception.RedLockException;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the resolution of the operations of the methods not prepared at startup,
+ * and of the keys failing fast while held.
+ *
+ * @author rui.zhang
+ */
+class RedLockAspectSupportTest {
+
+
+    private final InMemoryLockProvider lockProvider = new InMemoryLockProvider();
+
+    private RedLockInterceptor interceptor;
+
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new RedLockInterceptor();
+        interceptor.setBeanFactory(new DefaultListableBeanFactory());
+        interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        interceptor.setLockProvider(lockProvider);
+        interceptor.setNegativeCache(true);
+        interceptor.setNegativeCacheMaxTtlMillis(60_000);
+        interceptor.afterPropertiesSet();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        interceptor.destroy();
+        lockProvider.shutdown();
+    }
+
+
+    @Test
+    void resolvesValidOperationLazily() {
+        Method method = ClassUtils.getMethod(LazyOperations.class, "valid", String.class);
+
+        assertThat(interceptor.getRedLockOperationMetadata(method, LazyOperations.class)).isNotNull();
+    }
+
+
+    @Test
+    void validatesOperationResolvedLazily() {
+        Method method = ClassUtils.getMethod(LazyOperations.class, "negativeWait", String.class);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> interceptor.getRedLockOperationMetadata(method, LazyOperations.class))
+                .withMessageContaining("wait time");
+    }
+
+
+    @Test
+    void validatesZeroLeaseResolvedLazily() {
+        Method method = ClassUtils.getMethod(LazyOperations.class, "zeroLease", String.class);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> interceptor.getRedLockOperationMetadata(method, LazyOperations.class))
+                .withMessageContaining("lease time");
+    }
+
+
+    @Test
+    void rejectsStripedReadWriteLock() {
+        Method method = ClassUtils.getMethod(LazyOperations.class, "stripedRead", String.class);
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> interceptor.getRedLockOperationMetadata(method, LazyOperations.class))
+                .withMessageContaining("stripes");
+    }
+
+
+    @Test
+    void forgetsHeldKeyOnceReleasedHere() throws Throwable {
+        RedLockAspectSupport.RedLockOperationMetadata metadata = interceptor.createRedLockOperationMetadata(
+                RedLockOptions.builder("held").leaseTime(60).build().getOperation(), ClassUtils.getMethod(Object.class, "toString"));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try {
+                interceptor.execute(() -> {
+                    locked.countDown();
+                    awaitQuietly(release);
+                    return "held";
+                }, metadata, "held:1");
+            } catch (Throwable ignored) {
+            }
+        });
+        holder.start();
+        assertThat(locked.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> interceptor.execute(() -> "other", metadata, "held:1")).isInstanceOf(RedLockException.class);
+        assertThatThrownBy(() -> interceptor.execute(() -> "cached", metadata, "held:1")).isInstanceOf(RedLockException.class);
+
+        release.countDown();
+        holder.join();
+
+        assertThat(interceptor.execute(() -> "released", metadata, "held:1")).isEqualTo("released");
+    }
+
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    static class LazyOperations {
+
+        @RedLock(key = "#id")
+        public void valid(String id) {
+        }
+
+        @RedLock(key = "#id", waitTime = -1)
+        public void negativeWait(String id) {
+        }
+
+        @RedLock(key = "#id", leaseTime = 0)
+        public void zeroLease(String id) {
+        }
+
+        @RedLock(key = "#id", mode = LockMode.READ, striped = true)
+        public void stripedRead(String id) {
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package org.chobit.spring.redlock.interceptor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.chobit.spring.redlock.FallbackPolicy;
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.metrics.MicrometerRedLockMetrics;
+import org.chobit.spring.redlock.observation.MicrometerRedLockObservations;
+import org.chobit.spring.redlock.provider.InMemoryLockProvider;
+import org.chobit.spring.redlock.provider.LockHandle;
+import org.chobit.spring.redlock.provider.LockLease;
+import org.chobit.spring.redlock.provider.LockProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the transitions of the {@link RedLockCircuitBreaker}, and of the invocations degraded while it is open.
+ *
+ * @author rui.zhang
+ */
+class RedLockCircuitBreakerTest {
+
+
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        RedLockCircuitBreaker breaker = new RedLockCircuitBreaker(10, 4, 0.5, 1_000, 0.9, 60_000, 1);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo("CLOSED");
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+
+    @Test
+    void opensOnFailureRate() {
+        RedLockCircuitBreaker breaker = new RedLockCircuitBreaker(10, 4, 0.5, 1_000, 0.9, 60_000, 1);
+
+        breaker.onSuccess(0, false);
+        breaker.onSuccess(0, false);
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo("CLOSED");
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo("OPEN");
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+
+    @Test
+    void opensOnSlowCallsWithoutWaiting() {
+        RedLockCircuitBreaker breaker = new RedLockCircuitBreaker(10, 4, 0.5, 1_000, 0.9, 60_000, 1);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(SLOW, true);
+        }
+        assertThat(breaker.getState()).as("the waiting ones are not slow").isEqualTo("CLOSED");
+
+        breaker.onSuccess(SLOW, false);
+
+        assertThat(breaker.getState()).isEqualTo("OPEN");
+    }
+
+
+    @Test
+    void closesOnceProbesSucceed() throws InterruptedException {
+        RedLockCircuitBreaker breaker = open(2);
+
+        Thread.sleep(30);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo("HALF_OPEN");
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+
+        breaker.onSuccess(0, false);
+        assertThat(breaker.getState()).isEqualTo("HALF_OPEN");
+        breaker.onSuccess(0, false);
+
+        assertThat(breaker.getState()).isEqualTo("CLOSED");
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onFailure();
+        assertThat(breaker.getState()).as("the window is reset once closed").isEqualTo("CLOSED");
+    }
+
+
+    @Test
+    void reopensOnceProbeFails() throws InterruptedException {
+        RedLockCircuitBreaker breaker = open(2);
+
+        Thread.sleep(30);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onSuccess(0, false);
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo("OPEN");
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+
+    @Test
+    void reopensOnceProbeIsSlow() throws InterruptedException {
+        RedLockCircuitBreaker breaker = open(1);
+
+        Thread.sleep(30);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onSuccess(SLOW, false);
+
+        assertThat(breaker.getState()).isEqualTo("OPEN");
+    }
+
+
+    @Test
+    void ignoresOutcomesRecordedWhileOpen() {
+        RedLockCircuitBreaker breaker = open(1);
+
+        breaker.onSuccess(0, false);
+        breaker.onSuccess(0, false);
+
+        assertThat(breaker.getState()).isEqualTo("OPEN");
+    }
+
+
+    @Test
+    void proceedsUnlockedWhileOpen() throws Throwable {
+        DownLockProvider lockProvider = new DownLockProvider();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<String> stopped = new CopyOnWriteArrayList<>();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new ObservationHandler<Observation.Context>() {
+            @Override
+            public void onStop(Observation.Context context) {
+                stopped.add(context.getName() + ":" + context.getLowCardinalityKeyValue("redlock.outcome").getValue());
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        });
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+        beanFactory.registerSingleton("observationRegistry", observationRegistry);
+
+        RedLockInterceptor interceptor = new RedLockInterceptor();
+        interceptor.setBeanFactory(beanFactory);
+        interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        interceptor.setLockProvider(lockProvider);
+        interceptor.setRedLockMetrics(new MicrometerRedLockMetrics(beanFactory.getBeanProvider(MeterRegistry.class)));
+        interceptor.setRedLockObservations(new MicrometerRedLockObservations(beanFactory.getBeanProvider(ObservationRegistry.class)));
+        interceptor.setCircuitBreaker(true);
+        interceptor.setCircuitBreakerWindow(2, 2);
+        interceptor.setCircuitBreakerOpen(60_000, 1);
+        interceptor.afterPropertiesSet();
+        try {
+            RedLockOptions options = RedLockOptions.builder("degraded").fallback(FallbackPolicy.PROCEED_UNLOCKED).build();
+            RedLockAspectSupport.RedLockOperationMetadata metadata = interceptor.createRedLockOperationMetadata(
+                    options.getOperation(), ClassUtils.getMethod(Object.class, "toString"));
+
+            lockProvider.down = true;
+            for (int i = 0; i < 2; i++) {
+                assertThatThrownBy(() -> interceptor.execute(() -> "locked", metadata, "degraded:1"))
+                        .hasMessage("redis down");
+            }
+            assertThat(interceptor.getCircuitBreakerState()).isEqualTo("OPEN");
+            stopped.clear();
+
+            assertThat(interceptor.execute(() -> "unlocked", metadata, "degraded:1")).isEqualTo("unlocked");
+
+            assertThat(meterRegistry.get("redlock.acquire.degraded").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("redlock.acquire").timer().count()).isEqualTo(2);
+            assertThat(stopped).containsExactly("redlock.acquire:degraded", "redlock:degraded");
+        } finally {
+            interceptor.destroy();
+            lockProvider.delegate.shutdown();
+        }
+    }
+
+
+    /**
+     * A breaker opened by failures, with an open duration of 20ms.
+     */
+    private static RedLockCircuitBreaker open(int probes) {
+        RedLockCircuitBreaker breaker = new RedLockCircuitBreaker(4, 2, 0.5, 1_000, 0.9, 20, probes);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo("OPEN");
+        return breaker;
+    }
+
+
+    /**
+     * In-memory locks failing as an unreachable Redis would while down.
+     */
+    private static final class DownLockProvider implements LockProvider {
+
+        private final InMemoryLockProvider delegate = new InMemoryLockProvider();
+
+        private volatile boolean down;
+
+        @Override
+        public LockHandle getLock(String key, LockMode mode) {
+            if (down) {
+                throw new IllegalStateException("redis down");
+            }
+            return delegate.getLock(key, mode);
+        }
+
+        @Override
+        public LockHandle getSemaphore(String key, int permits) {
+            return delegate.getSemaphore(key, permits);
+        }
+
+        @Override
+        public CompletionStage<boolean[]> renewAsync(List<LockLease> leases, long leaseMillis) {
+            return delegate.renewAsync(leases, leaseMillis);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.chobit.spring.redlock.interceptor;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.chobit.spring.redlock.WaitStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ClassUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of thousands of virtual threads waiting for the same key with {@link WaitStrategy#ASYNC}, on the
+ * two carrier threads the scheduler is given by the surefire configuration.
+ *
+ * <p>The waiters must be unmounted while waiting, so that the holders always find a carrier: they all
+ * complete within the bound, and no {@code jdk.VirtualThreadPinned} event is recorded.
+ *
+ * @author rui.zhang
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadWaitTest {
+
+
+    private static final int WAITERS = 5000;
+
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+
+    private RedLockInterceptor interceptor;
+
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new RedLockInterceptor();
+        interceptor.setBeanFactory(new DefaultListableBeanFactory());
+        interceptor.setRedLockOperationSource(new AnnotationRedLockOperationSource());
+        interceptor.setRedissonClient(InMemoryRedissonClient.create());
+        interceptor.setWaitStrategy(WaitStrategy.ASYNC);
+        interceptor.afterPropertiesSet();
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        interceptor.destroy();
+    }
+
+
+    @Test
+    void waitersCompleteUnpinnedOnTwoCarriers() throws Exception {
+        RedLockAspectSupport.RedLockOperationMetadata metadata = interceptor.createRedLockOperationMetadata(
+                RedLockOptions.builder("stock").waitTime(60).leaseTime(60).build().getOperation(),
+                ClassUtils.getMethod(Object.class, "toString"));
+        AtomicInteger locked = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        List<String> pinned = recordPinned(WAITERS, () -> {
+            try {
+                interceptor.execute(locked::incrementAndGet, metadata, "stock:7");
+            } catch (Throwable t) {
+                failures.incrementAndGet();
+            }
+        });
+
+        assertThat(failures).hasValue(0);
+        assertThat(locked).hasValue(WAITERS);
+        assertThat(pinned).isEmpty();
+    }
+
+
+    /**
+     * The recording does see a virtual thread parked while holding a monitor.
+     */
+    @Test
+    void recordsWaitPinnedByMonitor() throws Exception {
+        Object monitor = new Object();
+
+        List<String> pinned = recordPinned(1, () -> {
+            synchronized (monitor) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            }
+        });
+
+        assertThat(pinned).isNotEmpty();
+    }
+
+
+    /**
+     * Run the task on as many virtual threads, and return the pinned events recorded meanwhile.
+     */
+    private static List<String> recordPinned(int threads, Runnable task) throws Exception {
+        Path dump = Files.createTempFile("redlock-pinned", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED).withoutThreshold().withStackTrace();
+            recording.start();
+
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            for (int i = 0; i < threads; i++) {
+                executor.execute(task);
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).as("all the virtual threads complete").isTrue();
+
+            recording.stop();
+            recording.dump(dump);
+            return RecordingFile.readAllEvents(dump).stream()
+                    .filter(e -> PINNED.equals(e.getEventType().getName()))
+                    .map(RecordedEvent::toString)
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.chobit.spring.redlock.provider;
+
+import org.chobit.spring.redlock.LockMode;
+import org.chobit.spring.redlock.interceptor.InMemoryRedissonClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of the Redlock algorithm of the {@link MultiMasterLockProvider}, over in-memory masters
+ * answering late or failing as configured.
+ *
+ * @author rui.zhang
+ */
+class MultiMasterLockProviderTest {
+
+
+    /**
+     * The delay of a master failing every request
+     */
+    private static final long DOWN = -1;
+
+    private static final long OWNER = -1001L;
+
+    private static final long OTHER_OWNER = -1002L;
+
+    private static final ScheduledExecutorService LATENCY = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "multi-master-test-latency");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The in-memory masters behind the faults, to check the locks they hold
+     */
+    private final List<RedissonClient> backends = new ArrayList<>();
+
+    private MultiMasterLockProvider provider;
+
+
+    @AfterEach
+    void tearDown() {
+        if (null != provider) {
+            provider.shutdown();
+        }
+    }
+
+
+    @AfterAll
+    static void stopLatency() {
+        LATENCY.shutdownNow();
+    }
+
+
+    @Test
+    void acquiresOnceQuorumGranted() throws Exception {
+        LockHandle lock = lock(provider(200, 0.01, 0, 0, DOWN));
+
+        assertThat(tryLock(lock, 10_000)).isTrue();
+
+        assertThat(lockedOn("lock")).containsExactly(true, true, false);
+    }
+
+
+    @Test
+    void failsWithoutQuorum() throws Exception {
+        LockHandle lock = lock(provider(200, 0.01, 0, DOWN, DOWN));
+
+        assertThat(tryLock(lock, 10_000)).isFalse();
+    }
+
+
+    @Test
+    void rollsBackPartialAcquisitions() throws Exception {
+        LockHandle lock = lock(provider(200, 0.01, 0, DOWN, DOWN));
+
+        assertThat(tryLock(lock, 10_000)).isFalse();
+
+        assertThat(lockedOn("lock")).containsExactly(false, false, false);
+    }
+
+
+    @Test
+    void rollsBackGrantsAnsweredAfterNodeTimeout() throws Exception {
+        LockHandle lock = lock(provider(50, 0.01, 0, DOWN, 150));
+
+        assertThat(tryLock(lock, 10_000)).isFalse();
+        assertThat(lockedOn("lock")).containsExactly(false, false, false);
+
+        Thread.sleep(300);
+        assertThat(lockedOn("lock")).as("released once granted late").containsExactly(false, false, false);
+    }
+
+
+    @Test
+    void reducesValidityByElapsedTimeAndDrift() throws Exception {
+        assertThat(tryLock(lock(provider(1_000, 0.1, 0, 0, 0)), 100)).isTrue();
+        provider.shutdown();
+        backends.clear();
+
+        // 100ms lease - 95ms to reach the quorum - 12ms of drift leaves nothing
+        LockHandle lock = lock(provider(1_000, 0.1, 0, 95, 95));
+
+        assertThat(tryLock(lock, 100)).isFalse();
+        assertThat(lockedOn("lock")).containsExactly(false, false, false);
+    }
+
+
+    @Test
+    void rejectsLeaseShorterThanDrift() throws Exception {
+        LockHandle lock = lock(provider(1_000, 0.99, 0, 0, 0));
+
+        assertThat(tryLock(lock, 100)).isFalse();
+        assertThat(lockedOn("lock")).containsExactly(false, false, false);
+    }
+
+
+    @Test
+    void boundsLatencyBySlowestMasterOfQuorum() throws Exception {
+        LockHandle lock = lock(provider(5_000, 0.01, 0, 100, 2_000));
+
+        long beginTime = System.nanoTime();
+        assertThat(tryLock(lock, 10_000)).isTrue();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - beginTime);
+
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(100).isLessThan(1_000);
+    }
+
+
+    @Test
+    void failsToReleaseAfterLeaseExpired() throws Exception {
+        LockHandle lock = lock(provider(200, 0.01, 0, 0, 0));
+        assertThat(tryLock(lock, 50)).isTrue();
+
+        Thread.sleep(100);
+
+        assertThatThrownBy(() -> lock.unlockAsync(OWNER).toCompletableFuture().get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalMonitorStateException.class);
+        assertThat(lock.tryLockAsync(0, 10_000, TimeUnit.MILLISECONDS, OTHER_OWNER).toCompletableFuture().get()).isTrue();
+    }
+
+
+    @Test
+    void releasesOnQuorum() throws Exception {
+        LockHandle lock = lock(provider(200, 0.01, 0, 0, DOWN));
+        assertThat(tryLock(lock, 10_000)).isTrue();
+
+        lock.unlockAsync(OWNER).toCompletableFuture().get();
+
+        assertThat(lockedOn("lock")).containsExactly(false, false, false);
+        assertThat(lock.tryLockAsync(0, 10_000, TimeUnit.MILLISECONDS, OTHER_OWNER).toCompletableFuture().get()).isTrue();
+    }
+
+
+    /**
+     * @param delays the latency of each master in milliseconds, {@link #DOWN} for a master failing
+     */
+    private MultiMasterLockProvider provider(long nodeTimeoutMillis, double clockDriftFactor, long... delays) {
+        List<RedissonClient> masters = new ArrayList<>(delays.length);
+        for (long delay : delays) {
+            RedissonClient backend = InMemoryRedissonClient.create();
+            backends.add(backend);
+            masters.add(faulty(backend, delay));
+        }
+        this.provider = new MultiMasterLockProvider(masters, nodeTimeoutMillis, clockDriftFactor);
+        return provider;
+    }
+
+
+    private static LockHandle lock(MultiMasterLockProvider provider) {
+        return provider.getLock("lock", LockMode.REENTRANT);
+    }
+
+
+    private static boolean tryLock(LockHandle lock, long leaseMillis) throws Exception {
+        return lock.tryLockAsync(0, leaseMillis, TimeUnit.MILLISECONDS, OWNER).toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+
+    private List<Boolean> lockedOn(String key) {
+        List<Boolean> locked = new ArrayList<>(backends.size());
+        for (RedissonClient backend : backends) {
+            locked.add(backend.getLock(key).isLocked());
+        }
+        return locked;
+    }
+
+
+    /**
+     * A master answering the lock requests after the delay, or failing them all.
+     */
+    private static RedissonClient faulty(RedissonClient backend, long delayMillis) {
+        return proxy(RedissonClient.class, (proxy, method, args) -> {
+            Object result = invoke(backend, method, args);
+            return ("getLock".equals(method.getName()) ? faulty((RLock) result, delayMillis) : result);
+        });
+    }
+
+
+    private static RLock faulty(RLock lock, long delayMillis) {
+        return proxy(RLock.class, (proxy, method, args) -> {
+            boolean async = method.getName().endsWith("Async");
+            if (async && DOWN == delayMillis) {
+                return new CompletableFutureWrapper<>((Throwable) new IllegalStateException("master down"));
+            }
+            if (!"tryLockAsync".equals(method.getName()) || 0 == delayMillis) {
+                return invoke(lock, method, args);
+            }
+            CompletableFuture<Object> delayed = new CompletableFuture<>();
+            LATENCY.schedule(() -> ((CompletionStage<?>) invoke(lock, method, args)).whenComplete((value, ex) -> {
+                if (null != ex) {
+                    delayed.completeExceptionally(ex);
+                } else {
+                    delayed.complete(value);
+                }
+            }), delayMillis, TimeUnit.MILLISECONDS);
+            return new CompletableFutureWrapper<>(delayed);
+        });
+    }
+
+
+    private static Object invoke(Object target, Method method, Object[] args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw (e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause()));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MultiMasterLockProviderTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+}
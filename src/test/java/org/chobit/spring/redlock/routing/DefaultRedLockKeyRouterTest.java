@@ -0,0 +1,66 @@
+package org.chobit.spring.redlock.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the hashtags of the batches and of the stripes opted in by the operations.
+ *
+ * @author rui.zhang
+ */
+class DefaultRedLockKeyRouterTest {
+
+
+    private final DefaultRedLockKeyRouter router = new DefaultRedLockKeyRouter("app:", Collections.singletonMap("stock:0", 4));
+
+
+    @Test
+    void prefixesKeysOfOtherOperations() {
+        assertThat(router.route("order:7", false, false)).isEqualTo("app:order:7");
+        assertThat(router.route("stock:0", false, false)).isEqualTo("app:stock:0");
+        assertThat(router.route(new String[]{"order:1", "order:2"}, false)).containsExactly("app:order:1", "app:order:2");
+    }
+
+
+    @Test
+    void tagsBatchWithSharedNamespace() {
+        assertThat(router.route(new String[]{"order:1", "order:2", "order:3"}, true))
+                .containsExactly("app:{order}:1", "app:{order}:2", "app:{order}:3");
+    }
+
+
+    @Test
+    void tagsKeyAloneAsInBatch() {
+        String[] batch = router.route(new String[]{"order:1", "order:2"}, true);
+
+        assertThat(router.route("order:1", true, false)).isEqualTo(batch[0]);
+        assertThat(router.route(new String[]{"order:1", "user:9"}, true)).containsExactly("app:{order}:1", "app:{user}:9");
+        assertThat(router.route(new String[]{"order:1:a", "order:2"}, true)).containsExactly("app:{order:1}:a", "app:{order}:2");
+    }
+
+
+    @Test
+    void leavesOwnHashtagAsIs() {
+        assertThat(router.route(new String[]{"{o}:1", "{o}:2"}, true)).containsExactly("app:{o}:1", "app:{o}:2");
+        assertThat(router.route("order", true, false)).isEqualTo("app:order");
+    }
+
+
+    @Test
+    void stripesOnlyOptedInOperations() {
+        Set<String> routed = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            routed.add(router.route("stock:0", false, true));
+        }
+
+        assertThat(routed).containsExactlyInAnyOrder("app:stock:0#0", "app:stock:0#1", "app:stock:0#2", "app:stock:0#3");
+        assertThat(router.route("stock:1", false, true)).isEqualTo("app:stock:1");
+        assertThat(router.route(new String[]{"stock:0", "stock:1"}, false)).containsExactly("app:stock:0", "app:stock:1");
+    }
+
+}